@@ -0,0 +1,152 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+
+/**
+ * A square band matrix: only the cells {@code (i, j)} with
+ * {@code i-lower <= j <= i+upper} can be non-zero.
+ *
+ * The band is stored row by row in one array of
+ * {@code n * (lower+upper+1)} doubles; row {@code i} holds the cells
+ * {@code (i, i-lower) .. (i, i+upper)}, including the slots that would lie
+ * outside of the matrix in the first and last rows. Products cost
+ * {@code O(n * (lower+upper))} and the LU factorization
+ * {@code O(n * lower * (lower+upper))}.
+ */
+public class BandedMatrix {
+    private final int n;
+    private final int lower;
+    private final int upper;
+    private final int width;
+    private final double[] band;
+
+    public BandedMatrix(final int n, final int lower, final int upper) {
+        if (n < 0 || lower < 0 || upper < 0) {
+            throw new IllegalArgumentException("illegal band matrix "+n
+                    +" x "+n+" with bandwidths "+lower+"/"+upper);
+        }
+        this.n = n;
+        this.lower = lower;
+        this.upper = upper;
+        this.width = lower + upper + 1;
+        this.band = new double[n * width];
+    }
+
+    public int getRows() { return this.n; }
+
+    public int getCols() { return this.n; }
+
+    public int getLowerBandwidth() { return this.lower; }
+
+    public int getUpperBandwidth() { return this.upper; }
+
+    private void checkCell(final int i, final int j) {
+        if (i < 0 || i >= n || j < 0 || j >= n) {
+            throw new IndexOutOfBoundsException("cell ("+i+", "+j
+                    +") is outside of "+n+" x "+n+" matrix");
+        }
+    }
+
+    private boolean inBand(final int i, final int j) {
+        return j >= i - lower && j <= i + upper;
+    }
+
+    private int idx(final int i, final int j) {
+        return i*width + j - i + lower;
+    }
+
+    public double get(final int i, final int j) {
+        checkCell(i, j);
+        return inBand(i, j) ? band[idx(i, j)] : 0.0;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a non-zero value is put outside
+     *                                  of the band
+     */
+    public BandedMatrix put(final int i, final int j, final double val) {
+        checkCell(i, j);
+        if (inBand(i, j)) {
+            band[idx(i, j)] = val;
+        } else if (val != 0.0) {
+            throw new IllegalArgumentException("cell ("+i+", "+j
+                    +") is outside of the band");
+        }
+        return this;
+    }
+
+    public BandedMatrix multiply(final double x) {
+        final BandedMatrix ret = new BandedMatrix(n, lower, upper);
+        DenseKernels.scale(x, band, 0, ret.band, 0, band.length);
+        return ret;
+    }
+
+    /**
+     * Computes {@code y = this * x}, one dot product over the band per row.
+     */
+    public double[] multiply(final double[] x, final double[] y) {
+        if (x.length != n || y.length != n) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        for (int i=0; i<n; ++i) {
+            final int from = Math.max(0, i - lower);
+            final int to = Math.min(n, i + upper + 1);
+            y[i] = DenseKernels.dot(band, idx(i, from), x, from, to - from);
+        }
+        return y;
+    }
+
+    public BandedMatrix transpose() {
+        final BandedMatrix ret = new BandedMatrix(n, upper, lower);
+        for (int i=0; i<n; ++i) {
+            final int to = Math.min(n, i + upper + 1);
+            for (int j=Math.max(0, i - lower); j<to; ++j) {
+                ret.band[ret.idx(j, i)] = band[idx(i, j)];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Computes the LU factorization with partial pivoting of this matrix.
+     * See {@link BandedMatrixLU}.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public BandedMatrixLU lu() {
+        final int w = 2*lower + upper + 1;
+        final double[] lu = new double[n * w];
+        for (int i=0; i<n; ++i) {
+            System.arraycopy(band, i*width, lu, i*w, width);
+        }
+        return BandedMatrixLU.factor(n, lower, upper, lu);
+    }
+
+    /**
+     * Copies the non-zero cells into a matrix backed by {@code st}.
+     */
+    public Matrix toMatrix(final NestedStorage<Double> st) {
+        final Matrix ret = new Matrix(n, n, st);
+        for (int i=0; i<n; ++i) {
+            final int to = Math.min(n, i + upper + 1);
+            for (int j=Math.max(0, i - lower); j<to; ++j) {
+                final double v = band[idx(i, j)];
+                if (v != 0.0) {
+                    ret.put(i, j, v);
+                }
+            }
+        }
+        return ret;
+    }
+
+    public BandedMatrix copy() {
+        final BandedMatrix ret = new BandedMatrix(n, lower, upper);
+        System.arraycopy(band, 0, ret.band, 0, band.length);
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "BandedMatrix("+n+" x "+n+", bandwidths "+lower+"/"+upper+")";
+    }
+}
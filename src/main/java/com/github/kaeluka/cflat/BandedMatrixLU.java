@@ -0,0 +1,131 @@
+package com.github.kaeluka.cflat;
+
+/**
+ * LU factorization with partial pivoting of a {@link BandedMatrix}.
+ *
+ * Pivoting only swaps rows within the lower bandwidth, so the factors stay
+ * banded: {@code U} has an upper bandwidth of {@code lower+upper}, and the
+ * multipliers of column {@code k} are at most {@code lower} cells below the
+ * diagonal. Both are kept in one band array with rows of
+ * {@code 2*lower+upper+1} cells, row {@code i} starting at column
+ * {@code i-lower}. As in LAPACK's band routines, the multipliers are not
+ * moved by later row swaps; instead {@link #pivot()} records the row
+ * interchange of every step, and {@link #solve} replays them in order.
+ */
+public class BandedMatrixLU {
+    private final int n;
+    private final int lower;
+    private final int width;
+    private final double[] lu;
+    private final int[] piv;
+
+    private BandedMatrixLU(final int n, final int lower, final int upper, final double[] lu) {
+        this.n = n;
+        this.lower = lower;
+        this.width = 2*lower + upper + 1;
+        this.lu = lu;
+        this.piv = new int[n];
+    }
+
+    /**
+     * Factors {@code lu}, the rows of a band matrix widened to
+     * {@code 2*lower+upper+1} cells, in place.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    static BandedMatrixLU factor(final int n,
+                                 final int lower,
+                                 final int upper,
+                                 final double[] lu) {
+        final BandedMatrixLU ret = new BandedMatrixLU(n, lower, upper, lu);
+        for (int k=0; k<n; ++k) {
+            final int last = Math.min(n-1, k+lower);
+            final int end = Math.min(n-1, k+lower+upper);
+            int p = k;
+            double max = Math.abs(lu[ret.idx(k, k)]);
+            for (int i=k+1; i<=last; ++i) {
+                final double v = Math.abs(lu[ret.idx(i, k)]);
+                if (v > max) {
+                    max = v;
+                    p = i;
+                }
+            }
+            if (max == 0.0) {
+                throw new ArithmeticException("matrix is singular");
+            }
+            ret.piv[k] = p;
+            if (p != k) {
+                final int rowP = ret.idx(p, k);
+                final int rowK = ret.idx(k, k);
+                for (int j=0; j<=end-k; ++j) {
+                    final double tmp = lu[rowP+j];
+                    lu[rowP+j] = lu[rowK+j];
+                    lu[rowK+j] = tmp;
+                }
+            }
+            final double pivot = lu[ret.idx(k, k)];
+            for (int i=k+1; i<=last; ++i) {
+                final int ik = ret.idx(i, k);
+                final double l = lu[ik] / pivot;
+                lu[ik] = l;
+                if (l != 0.0) {
+                    DenseKernels.axpy(-l, lu, ret.idx(k, k+1), lu, ik+1, end-k);
+                }
+            }
+        }
+        return ret;
+    }
+
+    private int idx(final int i, final int j) {
+        return i*width + j - i + lower;
+    }
+
+    public int size() { return this.n; }
+
+    /**
+     * The row interchanges: in step {@code k}, row {@code k} was swapped
+     * with row {@code pivot()[k] >= k}. The returned array is shared, not
+     * copied.
+     */
+    public int[] pivot() { return this.piv; }
+
+    public double[] solve(final double[] b) {
+        return solve(b, new double[n]);
+    }
+
+    /**
+     * Solves {@code A*x = b} for {@code x}, writing the solution into
+     * {@code x}, which may be {@code b}.
+     */
+    public double[] solve(final double[] b, final double[] x) {
+        if (b.length != n || x.length != n) {
+            throw new IllegalArgumentException("vectors must have length "+n);
+        }
+        if (b != x) {
+            System.arraycopy(b, 0, x, 0, n);
+        }
+        for (int k=0; k<n; ++k) {
+            final int p = piv[k];
+            if (p != k) {
+                final double tmp = x[p];
+                x[p] = x[k];
+                x[k] = tmp;
+            }
+            final double x_k = x[k];
+            if (x_k == 0.0) {
+                continue;
+            }
+            final int last = Math.min(n-1, k+lower);
+            for (int i=k+1; i<=last; ++i) {
+                x[i] -= lu[idx(i, k)] * x_k;
+            }
+        }
+        final int band = width - lower - 1;
+        for (int i=n-1; i>=0; --i) {
+            final int end = Math.min(n-1, i+band);
+            x[i] = (x[i] - DenseKernels.dot(lu, idx(i, i+1), x, i+1, end-i))
+                    / lu[idx(i, i)];
+        }
+        return x;
+    }
+}
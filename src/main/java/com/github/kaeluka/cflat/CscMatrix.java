@@ -0,0 +1,114 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+
+import java.util.Arrays;
+
+/**
+ * An immutable compressed sparse column (CSC) snapshot of a {@link Matrix}.
+ *
+ * The non-null cells of column {@code j} are found at the positions
+ * {@code colPtr[j] .. colPtr[j+1]-1} of {@code rowIdx} (their rows, in
+ * ascending order) and {@code values}.
+ */
+public class CscMatrix {
+    private final int rows;
+    private final int cols;
+    private final int[] colPtr;
+    private final int[] rowIdx;
+    private final double[] values;
+
+    public CscMatrix(final int rows,
+                     final int cols,
+                     final int[] colPtr,
+                     final int[] rowIdx,
+                     final double[] values) {
+        if (colPtr.length != cols+1) {
+            throw new IllegalArgumentException("column pointers must have "
+                    +(cols+1)+" entries, got "+colPtr.length);
+        }
+        if (rowIdx.length != values.length || colPtr[cols] != values.length) {
+            throw new IllegalArgumentException("inconsistent number of " +
+                    "non-zeros: "+colPtr[cols]+" column pointers, "
+                    +rowIdx.length+" row indices, "+values.length+" values");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.colPtr = colPtr;
+        this.rowIdx = rowIdx;
+        this.values = values;
+    }
+
+    public static CscMatrix from(final Matrix m) {
+        return CsrMatrix.from(m).toCsc();
+    }
+
+    public int getRows() { return this.rows; }
+
+    public int getCols() { return this.cols; }
+
+    public int nonZeros() { return this.values.length; }
+
+    /**
+     * The column pointers. The returned array is shared, not copied.
+     */
+    public int[] columnPointers() { return this.colPtr; }
+
+    /**
+     * The row index of every stored value. The returned array is shared,
+     * not copied.
+     */
+    public int[] rowIndices() { return this.rowIdx; }
+
+    /**
+     * The stored values in column major order. The returned array is shared,
+     * not copied.
+     */
+    public double[] values() { return this.values; }
+
+    public double get(final int row, final int col) {
+        final int pos = Arrays.binarySearch(rowIdx, colPtr[col], colPtr[col+1], row);
+        return pos >= 0 ? values[pos] : 0.0;
+    }
+
+    /**
+     * Calls {@code f} with row and value of every stored cell of
+     * {@code col}, in ascending row order.
+     */
+    public void foreachInCol(final int col, final IntDoubleConsumer f) {
+        final int end = colPtr[col+1];
+        for (int p=colPtr[col]; p<end; ++p) {
+            f.accept(rowIdx[p], values[p]);
+        }
+    }
+
+    public CsrMatrix toCsr() {
+        final int[] rowPtr = new int[rows+1];
+        final int[] colIdx = new int[values.length];
+        final double[] csrValues = new double[values.length];
+        for (final int row : rowIdx) {
+            rowPtr[row+1]++;
+        }
+        for (int r=0; r<rows; ++r) {
+            rowPtr[r+1] += rowPtr[r];
+        }
+        final int[] next = Arrays.copyOf(rowPtr, rows);
+        for (int col=0; col<cols; ++col) {
+            for (int p=colPtr[col]; p<colPtr[col+1]; ++p) {
+                final int dst = next[rowIdx[p]]++;
+                colIdx[dst] = col;
+                csrValues[dst] = values[p];
+            }
+        }
+        return new CsrMatrix(rows, cols, rowPtr, colIdx, csrValues);
+    }
+
+    public Matrix toMatrix(final NestedStorage<Double> st) {
+        return toCsr().toMatrix(st);
+    }
+
+    @Override
+    public String toString() {
+        return "CscMatrix("+this.rows+" x "+this.cols+", "+nonZeros()+" non-zeros)";
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * An immutable compressed sparse row (CSR) snapshot of a {@link Matrix}.
+ *
+ * The non-null cells of row {@code i} are found at the positions
+ * {@code rowPtr[i] .. rowPtr[i+1]-1} of {@code colIdx} (their columns, in
+ * ascending order) and {@code values}.
+ */
+public class CsrMatrix {
+    private final int rows;
+    private final int cols;
+    private final int[] rowPtr;
+    private final int[] colIdx;
+    private final double[] values;
+
+    public CsrMatrix(final int rows,
+                     final int cols,
+                     final int[] rowPtr,
+                     final int[] colIdx,
+                     final double[] values) {
+        if (rowPtr.length != rows+1) {
+            throw new IllegalArgumentException("row pointers must have "
+                    +(rows+1)+" entries, got "+rowPtr.length);
+        }
+        if (colIdx.length != values.length || rowPtr[rows] != values.length) {
+            throw new IllegalArgumentException("inconsistent number of " +
+                    "non-zeros: "+rowPtr[rows]+" row pointers, "
+                    +colIdx.length+" column indices, "+values.length+" values");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    public static CsrMatrix from(final Matrix m) {
+        final int[] rowPtr = new int[m.getRows()+1];
+        final TIntArrayList colIdx = new TIntArrayList();
+        final TDoubleArrayList values = new TDoubleArrayList();
+        final TIntArrayList rowCols = new TIntArrayList();
+
+        int prevRow = 0;
+        for (final int row : m.nonNullRows()) {
+            for (int r=prevRow+1; r<=row; ++r) {
+                rowPtr[r] = colIdx.size();
+            }
+            final Storage<Double> st = m.storage.get(row);
+            rowCols.resetQuick();
+            st.foreachNonNull(col -> rowCols.add(col));
+            rowCols.sort();
+            for (int i=0; i<rowCols.size(); ++i) {
+                final int col = rowCols.getQuick(i);
+                colIdx.add(col);
+                values.add(st.get(col));
+            }
+            prevRow = row;
+        }
+        for (int r=prevRow+1; r<=m.getRows(); ++r) {
+            rowPtr[r] = colIdx.size();
+        }
+        return new CsrMatrix(m.getRows(), m.getCols(),
+                rowPtr, colIdx.toArray(), values.toArray());
+    }
+
+    public int getRows() { return this.rows; }
+
+    public int getCols() { return this.cols; }
+
+    public int nonZeros() { return this.values.length; }
+
+    /**
+     * The row pointers. The returned array is shared, not copied.
+     */
+    public int[] rowPointers() { return this.rowPtr; }
+
+    /**
+     * The column index of every stored value. The returned array is shared,
+     * not copied.
+     */
+    public int[] columnIndices() { return this.colIdx; }
+
+    /**
+     * The stored values in row major order. The returned array is shared,
+     * not copied.
+     */
+    public double[] values() { return this.values; }
+
+    public double get(final int row, final int col) {
+        final int pos = Arrays.binarySearch(colIdx, rowPtr[row], rowPtr[row+1], col);
+        return pos >= 0 ? values[pos] : 0.0;
+    }
+
+    /**
+     * Calls {@code f} with column and value of every stored cell of
+     * {@code row}, in ascending column order.
+     */
+    public void foreachInRow(final int row, final IntDoubleConsumer f) {
+        final int end = rowPtr[row+1];
+        for (int p=rowPtr[row]; p<end; ++p) {
+            f.accept(colIdx[p], values[p]);
+        }
+    }
+
+    public CscMatrix toCsc() {
+        final int[] colPtr = new int[cols+1];
+        final int[] rowIdx = new int[values.length];
+        final double[] cscValues = new double[values.length];
+        for (final int col : colIdx) {
+            colPtr[col+1]++;
+        }
+        for (int c=0; c<cols; ++c) {
+            colPtr[c+1] += colPtr[c];
+        }
+        final int[] next = Arrays.copyOf(colPtr, cols);
+        for (int row=0; row<rows; ++row) {
+            for (int p=rowPtr[row]; p<rowPtr[row+1]; ++p) {
+                final int dst = next[colIdx[p]]++;
+                rowIdx[dst] = row;
+                cscValues[dst] = values[p];
+            }
+        }
+        return new CscMatrix(rows, cols, colPtr, rowIdx, cscValues);
+    }
+
+    /**
+     * Expands this matrix into {@code st}, writing every row's storage in a
+     * single batch.
+     */
+    public Matrix toMatrix(final NestedStorage<Double> st) {
+        final Matrix ret = new Matrix(rows, cols, st);
+        for (int row=0; row<rows; ++row) {
+            if (rowPtr[row] == rowPtr[row+1]) {
+                continue;
+            }
+            final Storage<Double> out = ret.storage.get(row);
+            for (int p=rowPtr[row]; p<rowPtr[row+1]; ++p) {
+                out.set(colIdx[p], values[p]);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "CsrMatrix("+this.rows+" x "+this.cols+", "+nonZeros()+" non-zeros)";
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.kaeluka.cflat;
+
+/**
+ * The innermost loops of the dense {@link NativeMatrix} operations, on
+ * contiguous ranges of {@code double[]}s.
+ *
+ * This is the portable Java 8 implementation. The multi-release JAR
+ * carries a replacement in {@code META-INF/versions/21} that uses the
+ * vector API when the {@code jdk.incubator.vector} module is available;
+ * both versions must keep the same signatures.
+ */
+final class DenseKernels {
+    private DenseKernels() {}
+
+    /**
+     * Whether these kernels use SIMD instructions.
+     */
+    static boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * {@code sum(x[xOff+i] * y[yOff+i])} for {@code i < len}.
+     */
+    static double dot(final double[] x, final int xOff,
+                      final double[] y, final int yOff,
+                      final int len) {
+        double s = 0.0;
+        for (int i=0; i<len; ++i) {
+            s += x[xOff+i] * y[yOff+i];
+        }
+        return s;
+    }
+
+    /**
+     * {@code y[yOff+i] += alpha * x[xOff+i]} for {@code i < len}.
+     */
+    static void axpy(final double alpha,
+                     final double[] x, final int xOff,
+                     final double[] y, final int yOff,
+                     final int len) {
+        for (int i=0; i<len; ++i) {
+            y[yOff+i] += alpha * x[xOff+i];
+        }
+    }
+
+    /**
+     * Four {@link #axpy}s sharing {@code x}: row {@code r} of {@code y}
+     * starts at {@code yOff + r*yStride} and is scaled by {@code a_r}.
+     * Every element of {@code x} is loaded once for all four rows.
+     */
+    static void axpy4(final double a0, final double a1,
+                      final double a2, final double a3,
+                      final double[] x, final int xOff,
+                      final double[] y, final int yOff, final int yStride,
+                      final int len) {
+        final int y0 = yOff, y1 = y0+yStride, y2 = y1+yStride, y3 = y2+yStride;
+        for (int i=0; i<len; ++i) {
+            final double x_i = x[xOff+i];
+            y[y0+i] += a0 * x_i;
+            y[y1+i] += a1 * x_i;
+            y[y2+i] += a2 * x_i;
+            y[y3+i] += a3 * x_i;
+        }
+    }
+
+    /**
+     * {@code y[yOff+i] = alpha * x[xOff+i]} for {@code i < len}.
+     */
+    static void scale(final double alpha,
+                      final double[] x, final int xOff,
+                      final double[] y, final int yOff,
+                      final int len) {
+        for (int i=0; i<len; ++i) {
+            y[yOff+i] = alpha * x[xOff+i];
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+
+import java.util.Arrays;
+
+/**
+ * A square diagonal matrix that stores only its diagonal, so products,
+ * transposition and solving all take time linear in its size.
+ */
+public class DiagonalMatrix {
+    private final double[] diag;
+
+    public DiagonalMatrix(final int n) {
+        this(new double[n]);
+    }
+
+    /**
+     * A diagonal matrix with the cells of {@code diag} on its diagonal.
+     * Shared, not copied.
+     */
+    public DiagonalMatrix(final double[] diag) {
+        this.diag = diag;
+    }
+
+    public static DiagonalMatrix identity(final int n) {
+        final double[] diag = new double[n];
+        Arrays.fill(diag, 1.0);
+        return new DiagonalMatrix(diag);
+    }
+
+    public int getRows() { return diag.length; }
+
+    public int getCols() { return diag.length; }
+
+    private void checkCell(final int i, final int j) {
+        if (i < 0 || i >= diag.length || j < 0 || j >= diag.length) {
+            throw new IndexOutOfBoundsException("cell ("+i+", "+j
+                    +") is outside of "+diag.length+" x "+diag.length+" matrix");
+        }
+    }
+
+    public double get(final int i, final int j) {
+        checkCell(i, j);
+        return i == j ? diag[i] : 0.0;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a non-zero value is put off the
+     *                                  diagonal
+     */
+    public DiagonalMatrix put(final int i, final int j, final double val) {
+        checkCell(i, j);
+        if (i == j) {
+            diag[i] = val;
+        } else if (val != 0.0) {
+            throw new IllegalArgumentException("cell ("+i+", "+j
+                    +") is off the diagonal");
+        }
+        return this;
+    }
+
+    public DiagonalMatrix multiply(final double x) {
+        final double[] res = new double[diag.length];
+        DenseKernels.scale(x, diag, 0, res, 0, diag.length);
+        return new DiagonalMatrix(res);
+    }
+
+    public DiagonalMatrix multiply(final DiagonalMatrix other) {
+        if (diag.length != other.diag.length) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        final double[] res = new double[diag.length];
+        for (int i=0; i<res.length; ++i) {
+            res[i] = diag[i] * other.diag[i];
+        }
+        return new DiagonalMatrix(res);
+    }
+
+    /**
+     * Computes {@code y = this * x}.
+     */
+    public double[] multiply(final double[] x, final double[] y) {
+        if (x.length != diag.length || y.length != diag.length) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        for (int i=0; i<diag.length; ++i) {
+            y[i] = diag[i] * x[i];
+        }
+        return y;
+    }
+
+    /**
+     * Computes {@code this * other} by scaling every non-null row of
+     * {@code other}. The result is backed by an empty copy of
+     * {@code other}'s storage.
+     */
+    @SuppressWarnings("unchecked")
+    public Matrix multiply(final Matrix other) {
+        if (diag.length != other.getRows()) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        final Matrix res = new Matrix(diag.length, other.getCols(),
+                (NestedStorage<Double>) other.storage.emptyCopy());
+        for (final int row : other.nonNullRows()) {
+            final double d = diag[row];
+            if (d == 0.0) {
+                continue;
+            }
+            final Storage<Double> in = other.storage.get(row);
+            final Storage<Double> out = res.storage.get(row);
+            in.foreachNonNull(col -> out.set(col, d * in.get(col)));
+        }
+        return res;
+    }
+
+    public DiagonalMatrix transpose() {
+        return copy();
+    }
+
+    /**
+     * Solves {@code this * x = b}, writing the solution into {@code x},
+     * which may be {@code b}.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public double[] solve(final double[] b, final double[] x) {
+        if (b.length != diag.length || x.length != diag.length) {
+            throw new IllegalArgumentException("vectors must have length "+diag.length);
+        }
+        for (int i=0; i<diag.length; ++i) {
+            if (diag[i] == 0.0) {
+                throw new ArithmeticException("matrix is singular");
+            }
+            x[i] = b[i] / diag[i];
+        }
+        return x;
+    }
+
+    /**
+     * Copies the non-zero cells into a matrix backed by {@code st}.
+     */
+    public Matrix toMatrix(final NestedStorage<Double> st) {
+        final Matrix ret = new Matrix(diag.length, diag.length, st);
+        for (int i=0; i<diag.length; ++i) {
+            if (diag[i] != 0.0) {
+                ret.put(i, i, diag[i]);
+            }
+        }
+        return ret;
+    }
+
+    public DiagonalMatrix copy() {
+        return new DiagonalMatrix(Arrays.copyOf(diag, diag.length));
+    }
+
+    @Override
+    public String toString() {
+        return "DiagonalMatrix("+diag.length+" x "+diag.length+")";
+    }
+}
@@ -0,0 +1,236 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.annotations.Cflat;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.DoubleConsumer;
+import java.util.stream.DoubleStream;
+
+/**
+ * A sequence of unboxed {@code double}s.
+ *
+ * Like {@link Sequence}, its end is tracked by a {@code @Cflat} index, but
+ * the elements live in a plain {@code double[]} that grows by doubling, so
+ * {@link #add(double)}, {@link #get(int)} and {@link #set(int, double)}
+ * never box. {@link #asList()} offers a boxing {@link List} view for APIs
+ * that need one.
+ */
+@Cflat("*(next)->ok")
+public class DoubleSequence {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] data;
+    private DoubleSequenceIdx tail = new DoubleSequenceIdx();
+
+    public DoubleSequence() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DoubleSequence(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("negative capacity "+capacity);
+        }
+        this.data = new double[capacity];
+    }
+
+    /**
+     * A sequence holding a copy of {@code xs}.
+     */
+    public static DoubleSequence of(final double... xs) {
+        final DoubleSequence ret = new DoubleSequence(xs.length);
+        System.arraycopy(xs, 0, ret.data, 0, xs.length);
+        ret.tail.next_nth(xs.length);
+        return ret;
+    }
+
+    public int size() {
+        return tail.ok();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private void checkIndex(final int index, final int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("list index "+index
+                    +" out of bounds for list of length "+size);
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, 2 * data.length));
+        }
+    }
+
+    public boolean add(final double x) {
+        final int oldTail = tail.ok();
+        ensureCapacity(oldTail + 1);
+        data[oldTail] = x;
+        tail.next();
+        return true;
+    }
+
+    public void add(final int index, final double x) {
+        final int size = size();
+        if (index != size) {
+            checkIndex(index, size);
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(data, index, data, index + 1, size - index);
+        data[index] = x;
+        tail.next();
+    }
+
+    public double get(final int index) {
+        checkIndex(index, size());
+        return data[index];
+    }
+
+    /**
+     * @return the previous element at {@code index}
+     */
+    public double set(final int index, final double x) {
+        checkIndex(index, size());
+        final double ret = data[index];
+        data[index] = x;
+        return ret;
+    }
+
+    /**
+     * Removes the element at {@code index} and returns it.
+     */
+    public double removeAt(final int index) {
+        final int size = size();
+        checkIndex(index, size);
+        final double ret = data[index];
+        System.arraycopy(data, index + 1, data, index, size - index - 1);
+        tail.next_back();
+        return ret;
+    }
+
+    public void clear() {
+        tail = new DoubleSequenceIdx();
+    }
+
+    public int indexOf(final double x) {
+        final int size = size();
+        for (int i=0; i<size; ++i) {
+            if (Double.compare(data[i], x) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(final double x) {
+        return indexOf(x) >= 0;
+    }
+
+    public void forEach(final DoubleConsumer f) {
+        final int size = size();
+        for (int i=0; i<size; ++i) {
+            f.accept(data[i]);
+        }
+    }
+
+    public DoubleStream stream() {
+        return Arrays.stream(data, 0, size());
+    }
+
+    public double[] toArray() {
+        return Arrays.copyOf(data, size());
+    }
+
+    public DoubleSequence copy() {
+        final DoubleSequence ret = new DoubleSequence(0);
+        ret.data = toArray();
+        ret.tail = tail.copy();
+        return ret;
+    }
+
+    /**
+     * A live, modifiable {@link List} view of this sequence. Every element
+     * passing through it is boxed; {@code null} can't be stored.
+     */
+    public List<Double> asList() {
+        return new ListView();
+    }
+
+    private class ListView extends AbstractList<Double> implements RandomAccess {
+        @Override
+        public Double get(final int index) {
+            return DoubleSequence.this.get(index);
+        }
+
+        @Override
+        public Double set(final int index, final Double x) {
+            return DoubleSequence.this.set(index, x);
+        }
+
+        @Override
+        public void add(final int index, final Double x) {
+            DoubleSequence.this.add(index, x);
+        }
+
+        @Override
+        public Double remove(final int index) {
+            return removeAt(index);
+        }
+
+        @Override
+        public void clear() {
+            DoubleSequence.this.clear();
+        }
+
+        @Override
+        public int size() {
+            return DoubleSequence.this.size();
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof DoubleSequence)) {
+            return false;
+        }
+        final DoubleSequence other = (DoubleSequence) o;
+        final int size = size();
+        if (other.size() != size) {
+            return false;
+        }
+        for (int i=0; i<size; ++i) {
+            if (Double.compare(data[i], other.data[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int ret = 1;
+        final int size = size();
+        for (int i=0; i<size; ++i) {
+            ret = 31 * ret + Double.hashCode(data[i]);
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder ret = new StringBuilder(getClass().getSimpleName()).append("[");
+        final int size = size();
+        for (int i=0; i<size; ++i) {
+            if (i > 0) {
+                ret.append(", ");
+            }
+            ret.append(data[i]);
+        }
+        return ret.append("]").toString();
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.Storage;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * A list that keeps a gap of unused indices in its {@link Storage} at the
+ * position of the last edit, as in a text editor's gap buffer.
+ *
+ * Element {@code i} is stored at index {@code i} if it is in front of the
+ * gap and at {@code i + gapLength} otherwise, so {@link #get} and
+ * {@link #set} stay constant time. Inserting or removing at the gap only
+ * changes its bounds. An edit elsewhere first moves the gap there, which
+ * costs as many element moves as the distance from the last edit, not the
+ * length of the suffix as in {@link Sequence}. When the gap is full, it is
+ * widened in proportion to the size, so insertion is amortised constant
+ * time for edits near each other.
+ */
+public class GapSequence<T> extends AbstractList<T> implements RandomAccess {
+    private static final int MIN_GAP = 16;
+
+    private Storage<T> storage;
+    private int size = 0;
+    private int gapStart = 0;
+    private int gapEnd = 0;
+
+    /**
+     * @param storage an empty storage
+     */
+    public GapSequence(final Storage<T> storage) {
+        this.storage = storage;
+    }
+
+    private int physical(final int index) {
+        return index < gapStart ? index : index + (gapEnd - gapStart);
+    }
+
+    private void checkIndex(final int index, final int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("list index "+index
+                    +" out of bounds for list of length "+size);
+        }
+    }
+
+    private void clear(final int from, final int length) {
+        if (length > 0) {
+            storage = storage.setRange(from, null, length);
+        }
+    }
+
+    /**
+     * Moves the gap so that it starts at {@code index}, moving the elements
+     * in between to the other side of it.
+     */
+    private void moveGap(final int index) {
+        final int gap = gapEnd - gapStart;
+        if (index < gapStart) {
+            final int n = gapStart - index;
+            storage = storage.moveRange(index, index + gap, n);
+            clear(index, Math.min(n, gap));
+        } else if (index > gapStart) {
+            final int n = index - gapStart;
+            storage = storage.moveRange(gapEnd, gapStart, n);
+            clear(Math.max(index, gapEnd), Math.min(n, gap));
+        }
+        gapStart = index;
+        gapEnd = index + gap;
+    }
+
+    /**
+     * Makes room for at least one more element at the gap.
+     */
+    private void ensureGap() {
+        if (gapEnd > gapStart) {
+            return;
+        }
+        final int suffix = size - gapStart;
+        final int grow = Math.max(MIN_GAP, size / 2);
+        if (suffix > 0) {
+            storage = storage.moveRange(gapEnd, gapEnd + grow, suffix);
+            clear(gapEnd, Math.min(grow, suffix));
+        }
+        gapEnd += grow;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public T get(final int index) {
+        checkIndex(index, size);
+        return storage.get(physical(index));
+    }
+
+    @Override
+    public T set(final int index, final T element) {
+        checkIndex(index, size);
+        final int i = physical(index);
+        final T ret = storage.get(i);
+        storage = storage.set(i, element);
+        return ret;
+    }
+
+    @Override
+    public boolean add(final T element) {
+        add(size, element);
+        return true;
+    }
+
+    @Override
+    public void add(final int index, final T element) {
+        if (index != size) {
+            checkIndex(index, size);
+        }
+        moveGap(index);
+        ensureGap();
+        storage = storage.set(gapStart++, element);
+        ++size;
+        ++modCount;
+    }
+
+    @Override
+    public T remove(final int index) {
+        checkIndex(index, size);
+        moveGap(index);
+        final T ret = storage.get(gapEnd);
+        storage = storage.set(gapEnd++, null);
+        --size;
+        ++modCount;
+        return ret;
+    }
+
+    @Override
+    public void clear() {
+        storage = storage.emptyCopy();
+        size = gapStart = gapEnd = 0;
+        ++modCount;
+    }
+
+    /**
+     * Calls {@code action} on every element in order, reading the part in
+     * front of the gap and the part behind it directly.
+     */
+    @Override
+    public void forEach(final Consumer<? super T> action) {
+        for (int i=0; i<gapStart; ++i) {
+            action.accept(storage.get(i));
+        }
+        final int end = gapEnd + size - gapStart;
+        for (int i=gapEnd; i<end; ++i) {
+            action.accept(storage.get(i));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"("+storage.getClass()+")"+super.toString();
+    }
+}
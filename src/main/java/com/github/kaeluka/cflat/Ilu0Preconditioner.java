@@ -0,0 +1,91 @@
+package com.github.kaeluka.cflat;
+
+import java.util.Arrays;
+
+/**
+ * The incomplete LU factorization without fill-in, ILU(0): {@code M = L*U}
+ * where {@code L} (unit lower) and {@code U} have non-zeros only where
+ * {@code A} has. The factors are computed once, in compressed sparse row
+ * layout, with the same row-wise elimination as a full LU that drops every
+ * update outside of the pattern of {@code A}.
+ */
+public class Ilu0Preconditioner implements Preconditioner {
+    private final int n;
+    private final int[] rowPtr;
+    private final int[] colIdx;
+    private final double[] values;
+    /** Position of the diagonal cell of every row in {@link #values}. */
+    private final int[] diag;
+
+    /**
+     * @throws ArithmeticException if a diagonal cell is missing from
+     *                             {@code A} or becomes zero
+     */
+    public Ilu0Preconditioner(final Matrix A) {
+        if (A.getRows() != A.getCols()) {
+            throw new IllegalArgumentException("preconditioning needs a square matrix");
+        }
+        final CsrMatrix csr = CsrMatrix.from(A);
+        this.n = A.getRows();
+        this.rowPtr = csr.rowPointers();
+        this.colIdx = csr.columnIndices();
+        this.values = Arrays.copyOf(csr.values(), csr.values().length);
+        this.diag = new int[n];
+        for (int i=0; i<n; ++i) {
+            final int d = Arrays.binarySearch(colIdx, rowPtr[i], rowPtr[i+1], i);
+            if (d < 0) {
+                throw new ArithmeticException("zero on the diagonal in row "+i);
+            }
+            diag[i] = d;
+        }
+        factor();
+    }
+
+    private void factor() {
+        // pos[j]: position of cell (i, j) of the current row, or -1
+        final int[] pos = new int[n];
+        Arrays.fill(pos, -1);
+        for (int i=0; i<n; ++i) {
+            final int start = rowPtr[i];
+            final int end = rowPtr[i+1];
+            for (int p=start; p<end; ++p) {
+                pos[colIdx[p]] = p;
+            }
+            for (int p=start; p<diag[i]; ++p) {
+                final int k = colIdx[p];
+                final double l = values[p] / values[diag[k]];
+                values[p] = l;
+                for (int q=diag[k]+1; q<rowPtr[k+1]; ++q) {
+                    final int at = pos[colIdx[q]];
+                    if (at >= 0) {
+                        values[at] -= l * values[q];
+                    }
+                }
+            }
+            for (int p=start; p<end; ++p) {
+                pos[colIdx[p]] = -1;
+            }
+            if (values[diag[i]] == 0.0) {
+                throw new ArithmeticException("zero pivot in row "+i);
+            }
+        }
+    }
+
+    @Override
+    public void apply(final double[] r, final double[] z) {
+        for (int i=0; i<n; ++i) {
+            double s = r[i];
+            for (int p=rowPtr[i]; p<diag[i]; ++p) {
+                s -= values[p] * z[colIdx[p]];
+            }
+            z[i] = s;
+        }
+        for (int i=n-1; i>=0; --i) {
+            double s = z[i];
+            for (int p=diag[i]+1; p<rowPtr[i+1]; ++p) {
+                s -= values[p] * z[colIdx[p]];
+            }
+            z[i] = s / values[diag[i]];
+        }
+    }
+}
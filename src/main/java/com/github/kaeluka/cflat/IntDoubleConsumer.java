@@ -0,0 +1,10 @@
+package com.github.kaeluka.cflat;
+
+/**
+ * Receives one matrix or vector entry as an index and its value, without
+ * boxing either.
+ */
+@FunctionalInterface
+public interface IntDoubleConsumer {
+    void accept(int idx, double val);
+}
@@ -0,0 +1,236 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.annotations.Cflat;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A sequence of unboxed {@code int}s.
+ *
+ * Like {@link Sequence}, its end is tracked by a {@code @Cflat} index, but
+ * the elements live in a plain {@code int[]} that grows by doubling, so
+ * {@link #add(int)}, {@link #get(int)} and {@link #set(int, int)}
+ * never box. {@link #asList()} offers a boxing {@link List} view for APIs
+ * that need one.
+ */
+@Cflat("*(next)->ok")
+public class IntSequence {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] data;
+    private IntSequenceIdx tail = new IntSequenceIdx();
+
+    public IntSequence() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntSequence(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("negative capacity "+capacity);
+        }
+        this.data = new int[capacity];
+    }
+
+    /**
+     * A sequence holding a copy of {@code xs}.
+     */
+    public static IntSequence of(final int... xs) {
+        final IntSequence ret = new IntSequence(xs.length);
+        System.arraycopy(xs, 0, ret.data, 0, xs.length);
+        ret.tail.next_nth(xs.length);
+        return ret;
+    }
+
+    public int size() {
+        return tail.ok();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private void checkIndex(final int index, final int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("list index "+index
+                    +" out of bounds for list of length "+size);
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, 2 * data.length));
+        }
+    }
+
+    public boolean add(final int x) {
+        final int oldTail = tail.ok();
+        ensureCapacity(oldTail + 1);
+        data[oldTail] = x;
+        tail.next();
+        return true;
+    }
+
+    public void add(final int index, final int x) {
+        final int size = size();
+        if (index != size) {
+            checkIndex(index, size);
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(data, index, data, index + 1, size - index);
+        data[index] = x;
+        tail.next();
+    }
+
+    public int get(final int index) {
+        checkIndex(index, size());
+        return data[index];
+    }
+
+    /**
+     * @return the previous element at {@code index}
+     */
+    public int set(final int index, final int x) {
+        checkIndex(index, size());
+        final int ret = data[index];
+        data[index] = x;
+        return ret;
+    }
+
+    /**
+     * Removes the element at {@code index} and returns it.
+     */
+    public int removeAt(final int index) {
+        final int size = size();
+        checkIndex(index, size);
+        final int ret = data[index];
+        System.arraycopy(data, index + 1, data, index, size - index - 1);
+        tail.next_back();
+        return ret;
+    }
+
+    public void clear() {
+        tail = new IntSequenceIdx();
+    }
+
+    public int indexOf(final int x) {
+        final int size = size();
+        for (int i=0; i<size; ++i) {
+            if (data[i] == x) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(final int x) {
+        return indexOf(x) >= 0;
+    }
+
+    public void forEach(final IntConsumer f) {
+        final int size = size();
+        for (int i=0; i<size; ++i) {
+            f.accept(data[i]);
+        }
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(data, 0, size());
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size());
+    }
+
+    public IntSequence copy() {
+        final IntSequence ret = new IntSequence(0);
+        ret.data = toArray();
+        ret.tail = tail.copy();
+        return ret;
+    }
+
+    /**
+     * A live, modifiable {@link List} view of this sequence. Every element
+     * passing through it is boxed; {@code null} can't be stored.
+     */
+    public List<Integer> asList() {
+        return new ListView();
+    }
+
+    private class ListView extends AbstractList<Integer> implements RandomAccess {
+        @Override
+        public Integer get(final int index) {
+            return IntSequence.this.get(index);
+        }
+
+        @Override
+        public Integer set(final int index, final Integer x) {
+            return IntSequence.this.set(index, x);
+        }
+
+        @Override
+        public void add(final int index, final Integer x) {
+            IntSequence.this.add(index, x);
+        }
+
+        @Override
+        public Integer remove(final int index) {
+            return removeAt(index);
+        }
+
+        @Override
+        public void clear() {
+            IntSequence.this.clear();
+        }
+
+        @Override
+        public int size() {
+            return IntSequence.this.size();
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (!(o instanceof IntSequence)) {
+            return false;
+        }
+        final IntSequence other = (IntSequence) o;
+        final int size = size();
+        if (other.size() != size) {
+            return false;
+        }
+        for (int i=0; i<size; ++i) {
+            if (data[i] != other.data[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int ret = 1;
+        final int size = size();
+        for (int i=0; i<size; ++i) {
+            ret = 31 * ret + data[i];
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder ret = new StringBuilder(getClass().getSimpleName()).append("[");
+        final int size = size();
+        for (int i=0; i<size; ++i) {
+            if (i > 0) {
+                ret.append(", ");
+            }
+            ret.append(data[i]);
+        }
+        return ret.append("]").toString();
+    }
+}
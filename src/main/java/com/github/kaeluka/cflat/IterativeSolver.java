@@ -0,0 +1,376 @@
+package com.github.kaeluka.cflat;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Krylov subspace solvers for {@code A*x = b} with a sparse square
+ * {@link Matrix} {@code A}: conjugate gradients ({@link #cg}) for symmetric
+ * positive definite systems, restarted GMRES ({@link #gmres}) and
+ * BiCGSTAB ({@link #bicgstab}) for general ones.
+ *
+ * The solvers only touch {@code A} through sparse matrix-vector products,
+ * so they work on any storage and never fill in. All vectors are allocated
+ * once per solve. {@code x} is used as the initial guess and receives the
+ * solution. A solve stops when the residual {@code ||b - A*x||} drops to
+ * {@code tolerance * ||b||} or after {@code maxIterations} iterations,
+ * whichever comes first; the returned {@link Result} tells which.
+ */
+public class IterativeSolver {
+    public static final double DEFAULT_TOLERANCE = 1e-10;
+    public static final int DEFAULT_MAX_ITERATIONS = 1000;
+    public static final int DEFAULT_RESTART = 30;
+
+    /** The cosine below which BiCGSTAB treats two vectors as orthogonal. */
+    private static final double BREAKDOWN = Math.ulp(1.0);
+
+    private final Matrix A;
+    private final int n;
+    private Preconditioner preconditioner = Preconditioner.NONE;
+    private double tolerance = DEFAULT_TOLERANCE;
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+    private ForkJoinPool pool = null;
+    private int grain = Matrix.DEFAULT_GRAIN;
+
+    public IterativeSolver(final Matrix A) {
+        if (A.getRows() != A.getCols()) {
+            throw new IllegalArgumentException("iterative solvers need a square matrix");
+        }
+        this.A = A;
+        this.n = A.getRows();
+    }
+
+    public IterativeSolver withPreconditioner(final Preconditioner preconditioner) {
+        this.preconditioner = preconditioner;
+        return this;
+    }
+
+    /**
+     * The relative residual at which a solve stops.
+     */
+    public IterativeSolver withTolerance(final double tolerance) {
+        if (tolerance <= 0.0) {
+            throw new IllegalArgumentException("tolerance must be positive");
+        }
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    public IterativeSolver withMaxIterations(final int maxIterations) {
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("iteration limit must be positive");
+        }
+        this.maxIterations = maxIterations;
+        return this;
+    }
+
+    /**
+     * Runs the matrix-vector products on {@code pool}, in tasks of at most
+     * {@code grain} rows (see
+     * {@link Matrix#multiply(double[], double[], ForkJoinPool, int)}).
+     */
+    public IterativeSolver parallel(final ForkJoinPool pool, final int grain) {
+        if (grain <= 0) {
+            throw new IllegalArgumentException("grain must be positive");
+        }
+        this.pool = pool;
+        this.grain = grain;
+        return this;
+    }
+
+    /**
+     * The outcome of a solve.
+     */
+    public static class Result {
+        private final boolean converged;
+        private final int iterations;
+        private final double residual;
+
+        Result(final boolean converged, final int iterations, final double residual) {
+            this.converged = converged;
+            this.iterations = iterations;
+            this.residual = residual;
+        }
+
+        /**
+         * Whether the tolerance was reached.
+         */
+        public boolean converged() { return this.converged; }
+
+        public int iterations() { return this.iterations; }
+
+        /**
+         * The final relative residual {@code ||b - A*x|| / ||b||}.
+         */
+        public double residual() { return this.residual; }
+
+        @Override
+        public String toString() {
+            return (converged ? "converged" : "did not converge")
+                    +" after "+iterations+" iterations, relative residual "+residual;
+        }
+    }
+
+    private void spmv(final double[] x, final double[] y) {
+        if (pool == null) {
+            A.multiply(x, y);
+        } else {
+            A.multiply(x, y, pool, grain);
+        }
+    }
+
+    private static double dot(final double[] x, final double[] y) {
+        return DenseKernels.dot(x, 0, y, 0, x.length);
+    }
+
+    private static double norm(final double[] x) {
+        return Math.sqrt(dot(x, x));
+    }
+
+    /** {@code y += alpha * x} */
+    private static void axpy(final double alpha, final double[] x, final double[] y) {
+        DenseKernels.axpy(alpha, x, 0, y, 0, x.length);
+    }
+
+    /** {@code r = b - A*x} */
+    private void residual(final double[] b, final double[] x, final double[] r) {
+        spmv(x, r);
+        for (int i=0; i<n; ++i) {
+            r[i] = b[i] - r[i];
+        }
+    }
+
+    private void checkVectors(final double[] b, final double[] x) {
+        if (b.length != n || x.length != n) {
+            throw new IllegalArgumentException("vectors must have length "+n);
+        }
+        if (b == x) {
+            throw new IllegalArgumentException("b and x must be different buffers");
+        }
+    }
+
+    /**
+     * Solves {@code A*x = b} with the preconditioned conjugate gradient
+     * method. {@code A} and the preconditioner must be symmetric positive
+     * definite.
+     */
+    public Result cg(final double[] b, final double[] x) {
+        checkVectors(b, x);
+        final double bNorm = norm(b);
+        if (bNorm == 0.0) {
+            Arrays.fill(x, 0.0);
+            return new Result(true, 0, 0.0);
+        }
+        final double[] r = new double[n];
+        final double[] z = new double[n];
+        final double[] p = new double[n];
+        final double[] Ap = new double[n];
+        residual(b, x, r);
+        double rNorm = norm(r);
+        preconditioner.apply(r, z);
+        System.arraycopy(z, 0, p, 0, n);
+        double rz = dot(r, z);
+        int it = 0;
+        while (rNorm > tolerance * bNorm && it < maxIterations) {
+            spmv(p, Ap);
+            final double pAp = dot(p, Ap);
+            if (pAp == 0.0) {
+                break;
+            }
+            final double alpha = rz / pAp;
+            axpy(alpha, p, x);
+            axpy(-alpha, Ap, r);
+            rNorm = norm(r);
+            ++it;
+            preconditioner.apply(r, z);
+            final double rzNew = dot(r, z);
+            final double beta = rzNew / rz;
+            rz = rzNew;
+            for (int i=0; i<n; ++i) {
+                p[i] = z[i] + beta * p[i];
+            }
+        }
+        return new Result(rNorm <= tolerance * bNorm, it, rNorm / bNorm);
+    }
+
+    /**
+     * Solves {@code A*x = b} with the right-preconditioned BiCGSTAB method.
+     *
+     * The method breaks down when one of the inner products it divides by
+     * vanishes, i.e. when the two vectors in it are orthogonal up to
+     * rounding. The solve then stops with the last {@code x} and reports
+     * that it did not converge; GMRES does not have this problem.
+     */
+    public Result bicgstab(final double[] b, final double[] x) {
+        checkVectors(b, x);
+        final double bNorm = norm(b);
+        if (bNorm == 0.0) {
+            Arrays.fill(x, 0.0);
+            return new Result(true, 0, 0.0);
+        }
+        final double[] r = new double[n];
+        final double[] rHat = new double[n];
+        final double[] p = new double[n];
+        final double[] pHat = new double[n];
+        final double[] v = new double[n];
+        final double[] s = new double[n];
+        final double[] sHat = new double[n];
+        final double[] t = new double[n];
+        residual(b, x, r);
+        System.arraycopy(r, 0, rHat, 0, n);
+        double rNorm = norm(r);
+        final double rHatNorm = rNorm;
+        double rho = 1.0, alpha = 1.0, omega = 1.0;
+        int it = 0;
+        while (rNorm > tolerance * bNorm && it < maxIterations) {
+            final double rhoNew = dot(rHat, r);
+            if (orthogonal(rhoNew, rHatNorm, rNorm)) {
+                break;
+            }
+            final double beta = (rhoNew / rho) * (alpha / omega);
+            for (int i=0; i<n; ++i) {
+                p[i] = r[i] + beta * (p[i] - omega * v[i]);
+            }
+            preconditioner.apply(p, pHat);
+            spmv(pHat, v);
+            final double rv = dot(rHat, v);
+            if (orthogonal(rv, rHatNorm, norm(v))) {
+                break;
+            }
+            alpha = rhoNew / rv;
+            for (int i=0; i<n; ++i) {
+                s[i] = r[i] - alpha * v[i];
+            }
+            ++it;
+            final double sNorm = norm(s);
+            if (sNorm <= tolerance * bNorm) {
+                axpy(alpha, pHat, x);
+                rNorm = sNorm;
+                break;
+            }
+            preconditioner.apply(s, sHat);
+            spmv(sHat, t);
+            final double ts = dot(t, s);
+            final double tt = dot(t, t);
+            axpy(alpha, pHat, x);
+            if (orthogonal(ts, Math.sqrt(tt), sNorm)) {
+                // omega would be zero: keep the half step, whose residual is s
+                rNorm = sNorm;
+                break;
+            }
+            omega = ts / tt;
+            axpy(omega, sHat, x);
+            for (int i=0; i<n; ++i) {
+                r[i] = s[i] - omega * t[i];
+            }
+            rNorm = norm(r);
+            rho = rhoNew;
+        }
+        return new Result(rNorm <= tolerance * bNorm, it, rNorm / bNorm);
+    }
+
+    /**
+     * Whether {@code dot}, the inner product of two vectors with norms
+     * {@code xNorm} and {@code yNorm}, is zero up to rounding.
+     */
+    private static boolean orthogonal(final double dot, final double xNorm, final double yNorm) {
+        return Math.abs(dot) <= BREAKDOWN * xNorm * yNorm;
+    }
+
+    public Result gmres(final double[] b, final double[] x) {
+        return gmres(b, x, DEFAULT_RESTART);
+    }
+
+    /**
+     * Solves {@code A*x = b} with right-preconditioned GMRES, restarted
+     * every {@code restart} iterations. The Krylov basis takes
+     * {@code 2*restart} vectors of length {@code n}; the least squares
+     * problem is kept triangular with Givens rotations, so the residual is
+     * known in every iteration without computing it.
+     */
+    public Result gmres(final double[] b, final double[] x, final int restart) {
+        checkVectors(b, x);
+        if (restart <= 0) {
+            throw new IllegalArgumentException("restart must be positive");
+        }
+        final double bNorm = norm(b);
+        if (bNorm == 0.0) {
+            Arrays.fill(x, 0.0);
+            return new Result(true, 0, 0.0);
+        }
+        final int m = restart;
+        final double[][] V = new double[m+1][n];
+        final double[][] Z = new double[m][n];
+        final double[][] H = new double[m+1][m];
+        final double[] cs = new double[m];
+        final double[] sn = new double[m];
+        final double[] g = new double[m+1];
+        final double[] y = new double[m];
+        final double[] r = new double[n];
+
+        residual(b, x, r);
+        double rNorm = norm(r);
+        int it = 0;
+        while (rNorm > tolerance * bNorm && it < maxIterations) {
+            Arrays.fill(g, 0.0);
+            g[0] = rNorm;
+            for (int i=0; i<n; ++i) {
+                V[0][i] = r[i] / rNorm;
+            }
+            int k = 0;
+            while (k < m && it < maxIterations) {
+                preconditioner.apply(V[k], Z[k]);
+                final double[] w = V[k+1];
+                spmv(Z[k], w);
+                // modified Gram-Schmidt
+                for (int i=0; i<=k; ++i) {
+                    H[i][k] = dot(w, V[i]);
+                    axpy(-H[i][k], V[i], w);
+                }
+                final double h = norm(w);
+                H[k+1][k] = h;
+                if (h != 0.0) {
+                    for (int i=0; i<n; ++i) {
+                        w[i] /= h;
+                    }
+                }
+                for (int i=0; i<k; ++i) {
+                    final double tmp = cs[i] * H[i][k] + sn[i] * H[i+1][k];
+                    H[i+1][k] = -sn[i] * H[i][k] + cs[i] * H[i+1][k];
+                    H[i][k] = tmp;
+                }
+                final double d = Math.hypot(H[k][k], H[k+1][k]);
+                cs[k] = H[k][k] / d;
+                sn[k] = H[k+1][k] / d;
+                H[k][k] = d;
+                H[k+1][k] = 0.0;
+                g[k+1] = -sn[k] * g[k];
+                g[k] = cs[k] * g[k];
+                ++k;
+                ++it;
+                if (Math.abs(g[k]) <= tolerance * bNorm || h == 0.0) {
+                    break;
+                }
+            }
+            for (int i=k-1; i>=0; --i) {
+                double s = g[i];
+                for (int j=i+1; j<k; ++j) {
+                    s -= H[i][j] * y[j];
+                }
+                y[i] = s / H[i][i];
+            }
+            for (int i=0; i<k; ++i) {
+                axpy(y[i], Z[i], x);
+            }
+            residual(b, x, r);
+            final double newNorm = norm(r);
+            if (newNorm >= rNorm && Math.abs(g[k]) > tolerance * bNorm) {
+                // stagnation: a restart can't make progress
+                rNorm = newNorm;
+                break;
+            }
+            rNorm = newNorm;
+        }
+        return new Result(rNorm <= tolerance * bNorm, it, rNorm / bNorm);
+    }
+}
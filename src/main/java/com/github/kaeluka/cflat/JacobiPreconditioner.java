@@ -0,0 +1,32 @@
+package com.github.kaeluka.cflat;
+
+/**
+ * The Jacobi preconditioner: {@code M} is the diagonal of {@code A}.
+ */
+public class JacobiPreconditioner implements Preconditioner {
+    private final double[] inverseDiagonal;
+
+    /**
+     * @throws ArithmeticException if the diagonal of {@code A} has a zero
+     */
+    public JacobiPreconditioner(final Matrix A) {
+        if (A.getRows() != A.getCols()) {
+            throw new IllegalArgumentException("preconditioning needs a square matrix");
+        }
+        this.inverseDiagonal = new double[A.getRows()];
+        for (int i=0; i<inverseDiagonal.length; ++i) {
+            final Double d = A.storage.get(i).get(i);
+            if (d == null || d == 0.0) {
+                throw new ArithmeticException("zero on the diagonal in row "+i);
+            }
+            inverseDiagonal[i] = 1.0 / d;
+        }
+    }
+
+    @Override
+    public void apply(final double[] r, final double[] z) {
+        for (int i=0; i<z.length; ++i) {
+            z[i] = r[i] * inverseDiagonal[i];
+        }
+    }
+}
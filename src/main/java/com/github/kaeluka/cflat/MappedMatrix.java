@@ -0,0 +1,241 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only matrix backed by a memory-mapped file in a compact binary
+ * format.
+ *
+ * The file holds only the non-null cells, in compressed sparse row layout
+ * (see {@link CsrMatrix}), little endian:
+ * <pre>
+ *   int    magic ("CFMX"), int version, int rows, int cols, int nonZeros,
+ *          int padding
+ *   int[]  row pointers (rows+1)
+ *   int[]  column indices (nonZeros), padded to a multiple of 8 bytes
+ *   double[] values (nonZeros)
+ * </pre>
+ * Opening a file maps it and wraps the sections as buffers; nothing is
+ * parsed or copied, so the cost of {@link #open(Path)} doesn't depend on
+ * the size of the matrix. Pages are loaded by the OS as cells are read.
+ * Every section must fit into 2GB, which limits a file to 268M non-zeros.
+ */
+public class MappedMatrix {
+    private static final int MAGIC = 0x43464d58; // "CFMX"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * 4;
+
+    private final int rows;
+    private final int cols;
+    private final int nonZeros;
+    private final IntBuffer rowPtr;
+    private final IntBuffer colIdx;
+    private final DoubleBuffer values;
+
+    private MappedMatrix(final int rows, final int cols, final int nonZeros,
+                         final IntBuffer rowPtr,
+                         final IntBuffer colIdx,
+                         final DoubleBuffer values) {
+        this.rows = rows;
+        this.cols = cols;
+        this.nonZeros = nonZeros;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    private static long colIdxOffset(final int rows) {
+        return HEADER_BYTES + 4L * (rows + 1);
+    }
+
+    private static long valuesOffset(final int rows, final int nonZeros) {
+        final long end = colIdxOffset(rows) + 4L * nonZeros;
+        return (end + 7) & ~7L;
+    }
+
+    private static MappedByteBuffer map(final FileChannel ch,
+                                        final FileChannel.MapMode mode,
+                                        final long offset,
+                                        final long bytes) throws IOException {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("matrix section of "+bytes
+                    +" bytes exceeds the 2GB mapping limit");
+        }
+        final MappedByteBuffer ret = ch.map(mode, offset, bytes);
+        ret.order(ByteOrder.LITTLE_ENDIAN);
+        return ret;
+    }
+
+    /**
+     * Writes the non-null cells of {@code m} to {@code path}, replacing the
+     * file if it exists.
+     */
+    public static void write(final Matrix m, final Path path) throws IOException {
+        write(CsrMatrix.from(m), path);
+    }
+
+    public static void write(final CsrMatrix m, final Path path) throws IOException {
+        final int rows = m.getRows();
+        final int nnz = m.nonZeros();
+        final long valOff = valuesOffset(rows, nnz);
+        try (FileChannel ch = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            final ByteBuffer header = ByteBuffer
+                    .allocate(HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION)
+                    .putInt(rows).putInt(m.getCols()).putInt(nnz).putInt(0);
+            header.flip();
+            while (header.hasRemaining()) {
+                ch.write(header, HEADER_BYTES - header.remaining());
+            }
+            map(ch, FileChannel.MapMode.READ_WRITE, HEADER_BYTES, 4L * (rows + 1))
+                    .asIntBuffer().put(m.rowPointers());
+            map(ch, FileChannel.MapMode.READ_WRITE, colIdxOffset(rows), 4L * nnz)
+                    .asIntBuffer().put(m.columnIndices());
+            map(ch, FileChannel.MapMode.READ_WRITE, valOff, 8L * nnz)
+                    .asDoubleBuffer().put(m.values());
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write(Matrix, Path)}. The mapping stays
+     * valid after this method returns.
+     */
+    public static MappedMatrix open(final Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) {
+                throw new IOException(path+" is too short for a matrix file");
+            }
+            final MappedByteBuffer header =
+                    map(ch, FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(path+" is not a matrix file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("unsupported matrix file version "
+                        +header.getInt(4));
+            }
+            final int rows = header.getInt(8);
+            final int cols = header.getInt(12);
+            final int nnz = header.getInt(16);
+            final long valOff = valuesOffset(rows, nnz);
+            if (ch.size() < valOff + 8L * nnz) {
+                throw new IOException(path+" is truncated");
+            }
+            return new MappedMatrix(rows, cols, nnz,
+                    map(ch, FileChannel.MapMode.READ_ONLY,
+                            HEADER_BYTES, 4L * (rows + 1)).asIntBuffer(),
+                    map(ch, FileChannel.MapMode.READ_ONLY,
+                            colIdxOffset(rows), 4L * nnz).asIntBuffer(),
+                    map(ch, FileChannel.MapMode.READ_ONLY,
+                            valOff, 8L * nnz).asDoubleBuffer());
+        }
+    }
+
+    /**
+     * Loads a file written by {@link #write(Matrix, Path)} into a matrix
+     * backed by {@code st}.
+     */
+    public static Matrix read(final Path path,
+                              final NestedStorage<Double> st) throws IOException {
+        return open(path).toMatrix(st);
+    }
+
+    public int getRows() { return this.rows; }
+
+    public int getCols() { return this.cols; }
+
+    public int nonZeros() { return this.nonZeros; }
+
+    public double get(final int row, final int col) {
+        int lo = rowPtr.get(row);
+        int hi = rowPtr.get(row+1) - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int c = colIdx.get(mid);
+            if (c < col) {
+                lo = mid + 1;
+            } else if (c > col) {
+                hi = mid - 1;
+            } else {
+                return values.get(mid);
+            }
+        }
+        return 0.0;
+    }
+
+    /**
+     * Calls {@code f} with column and value of every stored cell of
+     * {@code row}, in ascending column order.
+     */
+    public void foreachInRow(final int row, final IntDoubleConsumer f) {
+        final int end = rowPtr.get(row+1);
+        for (int p=rowPtr.get(row); p<end; ++p) {
+            f.accept(colIdx.get(p), values.get(p));
+        }
+    }
+
+    /**
+     * Computes {@code y = this * x} straight from the mapped file.
+     */
+    public double[] multiply(final double[] x, final double[] y) {
+        if (x.length != cols || y.length != rows) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        for (int row=0; row<rows; ++row) {
+            final int end = rowPtr.get(row+1);
+            double sum = 0.0;
+            for (int p=rowPtr.get(row); p<end; ++p) {
+                sum += values.get(p) * x[colIdx.get(p)];
+            }
+            y[row] = sum;
+        }
+        return y;
+    }
+
+    public CsrMatrix toCsr() {
+        final int[] ptr = new int[rows+1];
+        final int[] idx = new int[nonZeros];
+        final double[] vals = new double[nonZeros];
+        rowPtr.duplicate().get(ptr);
+        colIdx.duplicate().get(idx);
+        values.duplicate().get(vals);
+        return new CsrMatrix(rows, cols, ptr, idx, vals);
+    }
+
+    public Matrix toMatrix(final NestedStorage<Double> st) {
+        final Matrix ret = new Matrix(rows, cols, st);
+        for (int row=0; row<rows; ++row) {
+            final int start = rowPtr.get(row);
+            final int end = rowPtr.get(row+1);
+            if (start == end) {
+                continue;
+            }
+            final Storage<Double> out = ret.storage.get(row);
+            for (int p=start; p<end; ++p) {
+                out.set(colIdx.get(p), values.get(p));
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedMatrix("+this.rows+" x "+this.cols+", "+nonZeros+" non-zeros)";
+    }
+}
@@ -4,24 +4,100 @@ import com.github.kaeluka.cflat.annotations.Cflat;
 import com.github.kaeluka.cflat.storage.NestedAssertionStorage;
 import com.github.kaeluka.cflat.storage.NestedStorage;
 import com.github.kaeluka.cflat.storage.Storage;
-import com.github.kaeluka.cflat.util.Mutable;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TIntArrayList;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.DoubleSupplier;
+import java.util.function.ObjIntConsumer;
 
 @Cflat("*(step)->ok")
 public class Matrix {
+    /**
+     * Default number of rows and columns of a result tile computed by
+     * {@link #multiplyTiled(Matrix)}.
+     */
+    public static final int DEFAULT_BLOCK = 64;
+
+    /**
+     * Default number of result rows a fork/join task computes without
+     * splitting further.
+     */
+    public static final int DEFAULT_GRAIN = 16;
+
     private final int rows;
     private final int cols;
     public final NestedStorage<Double> storage;
+    /**
+     * {@link #storage} without the bounds checking wrapper, for
+     * {@link MatrixCursor}, which checks bounds itself.
+     */
+    private final NestedStorage<Double> unchecked;
+    /**
+     * The column index: row {@code j} of this storage holds column
+     * {@code j} of the matrix, indexed by row. {@code null} if the matrix
+     * is only indexed by rows.
+     */
+    private final NestedStorage<Double> columns;
 
     public Matrix(final int rows,
                   final int cols,
                   final NestedStorage<Double> storage) {
+        this(rows, cols, storage, null);
+    }
+
+    /**
+     * Creates a matrix that is indexed both by rows, in {@code storage},
+     * and by columns, in {@code columnStorage}, so that {@link #getCol(int)}
+     * and column traversals cost as much as their row counterparts. Cells
+     * already present in {@code storage} are added to the column index.
+     *
+     * {@link #put(int, int, double)} and {@link MatrixCursor} keep both
+     * indices in sync, at the price of a second write per cell. Writes
+     * that go to a row storage directly (through {@link #storage} or
+     * {@link #getRow(int)}) bypass the column index. Pass {@code null} as
+     * {@code columnStorage} to index by rows only.
+     */
+    public Matrix(final int rows,
+                  final int cols,
+                  final NestedStorage<Double> storage,
+                  final NestedStorage<Double> columnStorage) {
         assert(storage != null);
         this.rows = rows;
         this.cols = cols;
+        this.unchecked = storage;
         this.storage = NestedAssertionStorage
                 .withAssertion(storage, this::check);
+        this.columns = columnStorage;
+        indexColumns();
+    }
+
+    public boolean hasColumnIndex() {
+        return this.columns != null;
+    }
+
+    /**
+     * Adds all non-null cells of the row storage to the column index.
+     */
+    private void indexColumns() {
+        if (columns == null) {
+            return;
+        }
+        storage.foreachNonNull(row -> {
+            final Storage<Double> r = storage.get(row);
+            r.foreachNonNull(col -> columns.get(col).set(row, r.get(col)));
+        });
+    }
+
+    /**
+     * Writes a cell into the column index, if there is one.
+     */
+    void indexCell(final int row, final int col, final double val) {
+        if (columns != null) {
+            columns.get(col).set(row, val);
+        }
     }
 
     public int getRows() { return this.rows; }
@@ -53,7 +129,26 @@ public class Matrix {
         }
     }
 
+    Storage<Double> uncheckedRow(final int row) {
+        return unchecked.get(row);
+    }
+
+    /**
+     * A new cursor for row-wise access to this matrix without index
+     * objects or per-access row lookups.
+     */
+    public MatrixCursor cursor() {
+        return new MatrixCursor(this);
+    }
+
+    /**
+     * Column {@code col}, indexed by row. With a column index, this is the
+     * index's storage for the column, which must not be written to.
+     */
     public Storage<Double> getCol(final int col) {
+        if (columns != null) {
+            return columns.get(col);
+        }
         return storage.getCol(col);
     }
 
@@ -95,56 +190,570 @@ public class Matrix {
         storage
                 .get(row)
                 .set(col, val);
+        indexCell(row, col, val);
         return this;
     }
 
     public Matrix multiply(final double x) {
-        Matrix res = new Matrix(
+        return expr().scale(x).evaluate();
+    }
+
+    /**
+     * A lazy element-wise expression with this matrix as its only operand.
+     */
+    public MatrixExpr expr() {
+        return MatrixExpr.of(this);
+    }
+
+    /**
+     * Sparse matrix product, computed row by row (Gustavson's algorithm):
+     * row {@code i} of the result is the sum of the rows {@code k} of
+     * {@code other} scaled by the non-null cells {@code (i, k)} of this
+     * matrix. Only those cells and rows are ever touched, so the cost is
+     * proportional to the number of multiplications that contribute to the
+     * result rather than to the number of row/column pairs.
+     */
+    public Matrix multiply(Matrix other) {
+        if (this.cols != other.rows) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        final Matrix res = new Matrix(
                 this.rows,
-                this.cols,
+                other.cols,
                 (NestedStorage<Double>) this.storage.emptyCopy());
-        this.storage.foreachNonNull(row ->
-                this.storage.foreachColNonNull(col ->
-                        res.put(row, col, this.get(row, col)*x))
-        );
+        final SparseAccumulator acc = new SparseAccumulator(other.cols);
+        this.storage.foreachNonNull(i -> {
+            multiplyRow(i, other, acc);
+            if (!acc.isEmpty()) {
+                acc.flushTo(res.storage.get(i));
+            }
+        });
         return res;
     }
 
-    private static double dot(final Storage<Double> a, final Storage<Double> b) {
-        final int max = Math.max(a.maxIdx(), b.maxIdx());
-        System.out.println("=====");
-        for (int i = 0; i < a.maxIdx(); i++) {
-            final Double v = a.has(i) ? a.get(i) : 0.0;
-            System.out.print(v+" ");
+    public Matrix multiplyParallel(Matrix other) {
+        return multiply(other, ForkJoinPool.commonPool(), DEFAULT_GRAIN);
+    }
+
+    /**
+     * Parallel variant of {@link #multiply(Matrix)}. The non-null rows of
+     * this matrix are split into fork/join tasks of at most {@code grain}
+     * rows that run on {@code pool}. The {@link NestedStorage}
+     * implementations are not thread safe, and {@link NestedStorage#get} may
+     * insert a missing row, so the tasks only read row storages that were
+     * looked up before forking. Every task computes its rows into a private
+     * sparse accumulator and keeps them; the finished rows are written to
+     * the result on the calling thread after the join.
+     */
+    public Matrix multiply(final Matrix other,
+                           final ForkJoinPool pool,
+                           final int grain) {
+        if (this.cols != other.rows) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
         }
-        System.out.println(" * ");
-        for (int i = 0; i < max; i++) {
-            final Double v = b.has(i) ? b.get(i) : 0.0;
-            System.out.print(v+" ");
+        if (grain <= 0) {
+            throw new IllegalArgumentException("grain must be positive");
         }
-        System.out.println("");
+        final Matrix res = new Matrix(
+                this.rows,
+                other.cols,
+                (NestedStorage<Double>) this.storage.emptyCopy());
+        final int[] rowIdx = nonNullRows();
+        final SparseRow[] out = new SparseRow[rowIdx.length];
+        pool.invoke(new MultiplyTask(this.rowStorages(), other.rowStorages(),
+                rowIdx, out, 0, rowIdx.length, other.cols, grain));
+        for (int r=0; r<rowIdx.length; ++r) {
+            if (out[r] != null) {
+                out[r].writeTo(res.storage.get(rowIdx[r]));
+            }
+        }
+        return res;
+    }
 
-        final Mutable<Double> ret = new Mutable<>(0.0);
-        a.joinInner(b, (x, y) -> ret.x += x*y);
-        System.out.println(" = "+ret.x);
-        return ret.x;
+    /**
+     * The storage of every row that holds a value, indexed by row, and
+     * {@code null} for the other rows. Fork/join tasks read rows through
+     * this array instead of {@link NestedStorage#get}, which may modify the
+     * nested storage.
+     */
+    @SuppressWarnings("unchecked")
+    Storage<Double>[] rowStorages() {
+        final Storage<Double>[] ret = (Storage<Double>[]) new Storage<?>[rows];
+        storage.foreachNonNull(row -> ret[row] = storage.get(row));
+        return ret;
     }
 
-    public Matrix multiply(Matrix other) {
-        Matrix res = new Matrix(
+    /**
+     * Adds row {@code row} of {@code this * other} to {@code acc}.
+     */
+    private void multiplyRow(final int row, final Matrix other, final SparseAccumulator acc) {
+        final Storage<Double> a = storage.get(row);
+        a.foreachNonNull(k -> {
+            final double a_ik = a.get(k);
+            final Storage<Double> b = other.storage.get(k);
+            b.foreachNonNull(j -> acc.add(j, a_ik * b.get(j)));
+        });
+    }
+
+    /**
+     * A dense row of values together with the list of columns that were
+     * written since the last flush, so that emitting and resetting a row
+     * costs time proportional to its non-zeros, not to its length.
+     */
+    private static class SparseAccumulator {
+        private final double[] values;
+        private final boolean[] occupied;
+        private final int[] touched;
+        private int n = 0;
+
+        SparseAccumulator(final int cols) {
+            this.values = new double[cols];
+            this.occupied = new boolean[cols];
+            this.touched = new int[cols];
+        }
+
+        void add(final int col, final double val) {
+            if (!occupied[col]) {
+                occupied[col] = true;
+                touched[n++] = col;
+            }
+            values[col] += val;
+        }
+
+        boolean isEmpty() {
+            return n == 0;
+        }
+
+        /**
+         * Writes all accumulated cells to {@code out} in ascending column
+         * order and resets the accumulator.
+         */
+        void flushTo(final Storage<Double> out) {
+            Arrays.sort(touched, 0, n);
+            for (int i = 0; i < n; ++i) {
+                final int col = touched[i];
+                out.set(col, values[col]);
+                values[col] = 0.0;
+                occupied[col] = false;
+            }
+            n = 0;
+        }
+
+        /**
+         * Removes all accumulated cells, in ascending column order, and
+         * resets the accumulator.
+         */
+        SparseRow drain() {
+            Arrays.sort(touched, 0, n);
+            final int[] cols = Arrays.copyOf(touched, n);
+            final double[] vals = new double[n];
+            for (int i = 0; i < n; ++i) {
+                vals[i] = values[cols[i]];
+                values[cols[i]] = 0.0;
+                occupied[cols[i]] = false;
+            }
+            n = 0;
+            return new SparseRow(cols, vals);
+        }
+    }
+
+    /**
+     * A finished row of a product, kept until it can be written.
+     */
+    private static class SparseRow {
+        private final int[] cols;
+        private final double[] vals;
+
+        SparseRow(final int[] cols, final double[] vals) {
+            this.cols = cols;
+            this.vals = vals;
+        }
+
+        void writeTo(final Storage<Double> out) {
+            for (int i = 0; i < cols.length; ++i) {
+                out.set(cols[i], vals[i]);
+            }
+        }
+    }
+
+    /**
+     * Computes the rows {@code rowIdx[from] .. rowIdx[to-1]} of a product
+     * into {@code out}, reading the operands' rows from
+     * {@link #rowStorages()} arrays only.
+     */
+    private static class MultiplyTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Storage<Double>[] a;
+        private final Storage<Double>[] b;
+        private final int[] rowIdx;
+        private final SparseRow[] out;
+        private final int from;
+        private final int to;
+        private final int cols;
+        private final int grain;
+
+        MultiplyTask(final Storage<Double>[] a, final Storage<Double>[] b,
+                     final int[] rowIdx, final SparseRow[] out,
+                     final int from, final int to,
+                     final int cols, final int grain) {
+            this.a = a;
+            this.b = b;
+            this.rowIdx = rowIdx;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+            this.cols = cols;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(
+                        new MultiplyTask(a, b, rowIdx, out, from, mid, cols, grain),
+                        new MultiplyTask(a, b, rowIdx, out, mid, to, cols, grain));
+                return;
+            }
+            final SparseAccumulator acc = new SparseAccumulator(cols);
+            for (int r = from; r < to; ++r) {
+                final Storage<Double> a_i = a[rowIdx[r]];
+                a_i.foreachNonNull(k -> {
+                    final Storage<Double> b_k = b[k];
+                    if (b_k != null) {
+                        final double a_ik = a_i.get(k);
+                        b_k.foreachNonNull(j -> acc.add(j, a_ik * b_k.get(j)));
+                    }
+                });
+                if (!acc.isEmpty()) {
+                    out[r] = acc.drain();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sparse matrix-vector product: computes {@code y = this * x}. Only the
+     * non-null cells of every row are visited, and the result is written to
+     * the caller supplied buffer {@code y}, so repeated products (as in
+     * iterative solvers) do not allocate.
+     */
+    public double[] multiply(final double[] x, final double[] y) {
+        checkVectorDims(x, y);
+        Arrays.fill(y, 0.0);
+        foreachNonNullRow(null, 0, (a, row) -> multiplyRow(a, row, x, y));
+        return y;
+    }
+
+    /**
+     * Parallel variant of {@link #multiply(double[], double[])}. The
+     * non-null rows are split into fork/join tasks of at most {@code grain}
+     * rows; every task only writes its own cells of {@code y}.
+     */
+    public double[] multiply(final double[] x,
+                             final double[] y,
+                             final ForkJoinPool pool,
+                             final int grain) {
+        checkVectorDims(x, y);
+        Arrays.fill(y, 0.0);
+        foreachNonNullRow(pool, grain, (a, row) -> multiplyRow(a, row, x, y));
+        return y;
+    }
+
+    /**
+     * Computes {@code y = this^T * x}. With a column index, every cell of
+     * {@code y} is the dot product of a column with {@code x}; otherwise
+     * the rows are scattered into {@code y}.
+     */
+    public double[] multiplyTransposed(final double[] x, final double[] y) {
+        if (x.length != this.rows || y.length != this.cols) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        Arrays.fill(y, 0.0);
+        if (columns != null) {
+            columns.foreachNonNull(col -> {
+                final Storage<Double> c = columns.get(col);
+                c.foreachNonNull(row -> y[col] += c.get(row) * x[row]);
+            });
+        } else {
+            storage.foreachNonNull(row -> {
+                final Storage<Double> r = storage.get(row);
+                final double x_row = x[row];
+                r.foreachNonNull(col -> y[col] += r.get(col) * x_row);
+            });
+        }
+        return y;
+    }
+
+    /**
+     * Runs {@code body} with the storage and index of every non-null row,
+     * on {@code pool} in tasks of at most {@code grain} rows, or on the
+     * calling thread if {@code pool} is {@code null}. The row storages are
+     * looked up before forking, so {@code body} must not access
+     * {@link #storage} itself.
+     */
+    void foreachNonNullRow(final ForkJoinPool pool,
+                           final int grain,
+                           final ObjIntConsumer<Storage<Double>> body) {
+        if (pool == null) {
+            storage.foreachNonNull(row -> body.accept(storage.get(row), row));
+            return;
+        }
+        if (grain <= 0) {
+            throw new IllegalArgumentException("grain must be positive");
+        }
+        final int[] rowIdx = nonNullRows();
+        pool.invoke(new RowsTask(rowStorages(), rowIdx, 0, rowIdx.length, grain, body));
+    }
+
+    private void checkVectorDims(final double[] x, final double[] y) {
+        if (x.length != this.cols) {
+            throw new IllegalArgumentException("vector of length "+x.length
+                    +" can't be multiplied with a matrix with "+cols+" cols");
+        }
+        if (y.length != this.rows) {
+            throw new IllegalArgumentException("result buffer of length "
+                    +y.length+" can't hold the product of a matrix with "
+                    +rows+" rows");
+        }
+    }
+
+    private static void multiplyRow(final Storage<Double> a,
+                                    final int row,
+                                    final double[] x,
+                                    final double[] y) {
+        a.foreachNonNull(col -> y[row] += a.get(col) * x[col]);
+    }
+
+    /**
+     * Runs {@code body} for the rows {@code rowIdx[from] .. rowIdx[to-1]},
+     * splitting into subtasks of at most {@code grain} rows.
+     */
+    private static class RowsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Storage<Double>[] rowStorages;
+        private final int[] rowIdx;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final ObjIntConsumer<Storage<Double>> body;
+
+        RowsTask(final Storage<Double>[] rowStorages,
+                 final int[] rowIdx, final int from, final int to,
+                 final int grain, final ObjIntConsumer<Storage<Double>> body) {
+            this.rowStorages = rowStorages;
+            this.rowIdx = rowIdx;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(
+                        new RowsTask(rowStorages, rowIdx, from, mid, grain, body),
+                        new RowsTask(rowStorages, rowIdx, mid, to, grain, body));
+                return;
+            }
+            for (int r = from; r < to; ++r) {
+                final int row = rowIdx[r];
+                body.accept(rowStorages[row], row);
+            }
+        }
+    }
+
+    /**
+     * A transposed view of this matrix that shares its storage.
+     */
+    public MatrixView transposeView() {
+        return new MatrixView(this, 0, 0, cols, rows, true);
+    }
+
+    /**
+     * A view of rows {@code rowStart .. rowEnd-1} and columns
+     * {@code colStart .. colEnd-1} of this matrix that shares its storage.
+     */
+    public MatrixView view(final int rowStart, final int rowEnd,
+                           final int colStart, final int colEnd) {
+        return new MatrixView(this, 0, 0, rows, cols, false)
+                .view(rowStart, rowEnd, colStart, colEnd);
+    }
+
+    /**
+     * Multiplies this matrix with a view without materialising it. For a
+     * transposed view, cell {@code (i, j)} of the result is the dot product
+     * of row {@code i} of this matrix and a row of the view's base matrix,
+     * so both operands are traversed row-wise. Otherwise, rows of the base
+     * matrix are accumulated as in {@link #multiply(Matrix)}, ignoring
+     * columns outside of the view.
+     */
+    @SuppressWarnings("unchecked")
+    public Matrix multiply(final MatrixView other) {
+        if (this.cols != other.getRows()) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        final Matrix res = new Matrix(
                 this.rows,
-                other.cols,
+                other.getCols(),
                 (NestedStorage<Double>) this.storage.emptyCopy());
+        final NestedStorage<Double> b = other.base().storage;
+        final int rowOff = other.rowOffset();
+        final int colOff = other.colOffset();
+        final int inner = other.getRows();
+        final int outCols = other.getCols();
+        if (other.isTransposed()) {
+            final int[] bRows = other.base().nonNullRows();
+            final double[] sum = new double[1];
+            this.storage.foreachNonNull(i -> {
+                final Storage<Double> a = storage.get(i);
+                final Storage<Double> out = res.storage.get(i);
+                for (final int bRow : bRows) {
+                    final int j = bRow - rowOff;
+                    if (j < 0 || j >= outCols) {
+                        continue;
+                    }
+                    final Storage<Double> bj = b.get(bRow);
+                    sum[0] = 0.0;
+                    if (colOff == 0 && inner == other.base().getCols()) {
+                        a.joinInner(bj, (x, y) -> sum[0] += x*y);
+                    } else {
+                        a.foreachNonNull(k -> {
+                            final Double y = bj.get(colOff+k);
+                            if (y != null) {
+                                sum[0] += a.get(k) * y;
+                            }
+                        });
+                    }
+                    if (sum[0] != 0.0) {
+                        out.set(j, sum[0]);
+                    }
+                }
+            });
+        } else {
+            final SparseAccumulator acc = new SparseAccumulator(outCols);
+            this.storage.foreachNonNull(i -> {
+                final Storage<Double> a = storage.get(i);
+                a.foreachNonNull(k -> {
+                    final double a_ik = a.get(k);
+                    final Storage<Double> bk = b.get(rowOff+k);
+                    bk.foreachNonNull(c -> {
+                        final int j = c - colOff;
+                        if (j >= 0 && j < outCols) {
+                            acc.add(j, a_ik * bk.get(c));
+                        }
+                    });
+                });
+                if (!acc.isEmpty()) {
+                    acc.flushTo(res.storage.get(i));
+                }
+            });
+        }
+        return res;
+    }
+
+    /**
+     * The indices of all rows that hold at least one value, in ascending
+     * order.
+     */
+    int[] nonNullRows() {
+        final TIntArrayList ret = new TIntArrayList();
+        storage.foreachNonNull(row -> ret.add(row));
+        ret.sort();
+        return ret.toArray();
+    }
+
+    public Matrix multiplyTiled(Matrix other) {
+        return multiplyTiled(other, DEFAULT_BLOCK, DEFAULT_BLOCK);
+    }
+
+    /**
+     * Cache-blocked variant of {@link #multiply(Matrix)}. The result is
+     * computed in tiles of {@code blockRows} non-null rows of this matrix by
+     * {@code blockCols} columns of {@code other}. Every tile is accumulated
+     * in a dense scratch buffer, and only its non-zero cells are written to
+     * the result.
+     *
+     * {@code other} is compressed into a {@link CsrMatrix} once, so its rows
+     * can be read in column order. Every non-null cell {@code (i, k)} of a
+     * block of rows keeps a cursor into row {@code k} of {@code other} that
+     * moves forward from tile to tile. A tile therefore only reads the cells
+     * of {@code other} that fall into its columns, and every cell is read
+     * once per block of rows that uses it.
+     */
+    public Matrix multiplyTiled(final Matrix other,
+                                final int blockRows,
+                                final int blockCols) {
         if (this.cols != other.rows) {
             throw new IllegalArgumentException("matrix dimensions don't match!");
         }
-        this.storage.foreachNonNull(i -> {
-            other.storage.foreachColNonNull(j -> {
-                res.put(i,j, dot(
-                        getRow(i),
-                        other.getCol(j)));
-            });
-        });
+        if (blockRows <= 0 || blockCols <= 0) {
+            throw new IllegalArgumentException("block sizes must be positive");
+        }
+        final Matrix res = new Matrix(
+                this.rows,
+                other.cols,
+                (NestedStorage<Double>) this.storage.emptyCopy());
+        final CsrMatrix b = CsrMatrix.from(other);
+        final int[] bPtr = b.rowPointers();
+        final int[] bCol = b.columnIndices();
+        final double[] bVal = b.values();
+        final int[] rowIdx = nonNullRows();
+        final double[] tile = new double[blockRows*blockCols];
+        // the cells of the current block of rows that meet a non-empty row
+        // of other: their row in the tile, value, and cursor into other
+        final TIntArrayList cellTileRow = new TIntArrayList();
+        final TDoubleArrayList cellVal = new TDoubleArrayList();
+        final TIntArrayList cellPos = new TIntArrayList();
+        final TIntArrayList cellEnd = new TIntArrayList();
+        for (int r0=0; r0<rowIdx.length; r0+=blockRows) {
+            final int rMax = Math.min(r0+blockRows, rowIdx.length);
+            cellTileRow.resetQuick();
+            cellVal.resetQuick();
+            cellPos.resetQuick();
+            cellEnd.resetQuick();
+            for (int r=r0; r<rMax; ++r) {
+                final int tileRow = (r-r0)*blockCols;
+                final Storage<Double> a = storage.get(rowIdx[r]);
+                a.foreachNonNull(k -> {
+                    if (bPtr[k] < bPtr[k+1]) {
+                        cellTileRow.add(tileRow);
+                        cellVal.add(a.get(k));
+                        cellPos.add(bPtr[k]);
+                        cellEnd.add(bPtr[k+1]);
+                    }
+                });
+            }
+            final int cells = cellVal.size();
+            for (int j0=0; j0<other.cols; j0+=blockCols) {
+                final int jMin = j0;
+                final int jMax = Math.min(j0+blockCols, other.cols);
+                Arrays.fill(tile, 0.0);
+                for (int c=0; c<cells; ++c) {
+                    final int tileRow = cellTileRow.getQuick(c) - jMin;
+                    final double a_ik = cellVal.getQuick(c);
+                    final int end = cellEnd.getQuick(c);
+                    int p = cellPos.getQuick(c);
+                    while (p < end && bCol[p] < jMax) {
+                        tile[tileRow+bCol[p]] += a_ik * bVal[p];
+                        ++p;
+                    }
+                    cellPos.setQuick(c, p);
+                }
+                for (int r=r0; r<rMax; ++r) {
+                    final int tileRow = (r-r0)*blockCols - jMin;
+                    for (int j=jMin; j<jMax; ++j) {
+                        if (tile[tileRow+j] != 0.0) {
+                            res.put(rowIdx[r], j, tile[tileRow+j]);
+                        }
+                    }
+                }
+            }
+        }
         return res;
     }
 
@@ -213,10 +822,10 @@ public class Matrix {
                 final double a_nn = U.get(n,n);
                 final double a_n1n = U.get(r, n);
                 final double multiplier = a_n1n/a_nn;
+                L.put(r, n, multiplier);
                 for (int i = n; i < N; ++i) {
                     U.put(r, i,
                             U.get(r, i) - multiplier * U.get(n, i));
-                    L.put(r, n, multiplier);
                 }
             }
         }
@@ -224,6 +833,31 @@ public class Matrix {
         return new Matrix[]{ L, U };
     }
 
+    /**
+     * Computes the LU factorization with partial pivoting of a copy of this
+     * matrix.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public MatrixLU lu() {
+        return copy().luInPlace();
+    }
+
+    /**
+     * Computes the LU factorization with partial pivoting, overwriting this
+     * matrix with the packed factors.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public MatrixLU luInPlace() {
+        if (rows != cols) {
+            throw new IllegalArgumentException("LU factorization needs a square matrix");
+        }
+        final MatrixLU ret = new MatrixLU(this);
+        indexColumns();
+        return ret;
+    }
+
     @Override
     public String toString() {
         return "Matrix("+this.rows+" x "+this.cols+")\n"+
@@ -232,9 +866,7 @@ public class Matrix {
 
     public static Matrix identity(final int N, final NestedStorage<Double> st) {
         final Matrix ret = new Matrix(N, N, st);
-        System.out.println("identity("+N+")");
         for (int i=0; i<N; ++i) {
-            System.out.println("i=" + i);
             ret.put(i,i, 1);
         }
         return ret;
@@ -267,7 +899,9 @@ public class Matrix {
         return true;
     }
 
+    @SuppressWarnings("unchecked")
     public Matrix copy() {
-        return new Matrix(rows, cols, storage.copyNested());
+        return new Matrix(rows, cols, storage.copyNested(),
+                columns == null ? null : (NestedStorage<Double>) columns.emptyCopy());
     }
 }
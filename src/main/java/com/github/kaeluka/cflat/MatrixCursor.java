@@ -0,0 +1,104 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.Storage;
+
+/**
+ * A reusable cursor over the rows of a {@link Matrix}.
+ *
+ * {@link #row(int)} looks up a row's {@link Storage} once and pins it; all
+ * accesses after that go straight to the pinned row with primitive column
+ * indices. No index objects are built and the matrix's per-access
+ * assertion wrapper is skipped: the cursor checks the row when it is
+ * pinned and the column of every access against the matrix dimensions
+ * itself. A cursor can be moved to another row at any time and should not
+ * be shared between threads.
+ *
+ * <pre>
+ *   final MatrixCursor c = m.cursor();
+ *   for (int i=0; i&lt;m.getRows(); ++i) {
+ *       c.row(i).foreachNonNull((j, v) -&gt; c.set(j, 2*v));
+ *   }
+ * </pre>
+ */
+public class MatrixCursor {
+    private final Matrix m;
+    private Storage<Double> current;
+    private int row = -1;
+
+    MatrixCursor(final Matrix m) {
+        this.m = m;
+    }
+
+    /**
+     * Pins row {@code row}.
+     */
+    public MatrixCursor row(final int row) {
+        if (row < 0 || row >= m.getRows()) {
+            throw new IndexOutOfBoundsException("row index "+row
+                    +" is out of bounds for matrix with "+m.getRows()+" rows");
+        }
+        this.row = row;
+        this.current = m.uncheckedRow(row);
+        return this;
+    }
+
+    /**
+     * The pinned row, or -1 if none was pinned yet.
+     */
+    public int row() {
+        return this.row;
+    }
+
+    private Storage<Double> current(final int col) {
+        if (current == null) {
+            throw new IllegalStateException("no row pinned");
+        }
+        if (col < 0 || col >= m.getCols()) {
+            throw new IndexOutOfBoundsException("col index "+col
+                    +" is out of bounds for matrix with "+m.getCols()+" cols");
+        }
+        return current;
+    }
+
+    public boolean has(final int col) {
+        return current(col).get(col) != null;
+    }
+
+    /**
+     * The value of cell {@code col} of the pinned row, 0.0 if null.
+     */
+    public double get(final int col) {
+        final Double v = current(col).get(col);
+        return v == null ? 0.0 : v;
+    }
+
+    public MatrixCursor set(final int col, final double val) {
+        current(col).set(col, val);
+        m.indexCell(row, col, val);
+        return this;
+    }
+
+    /**
+     * Adds {@code val} to cell {@code col} of the pinned row.
+     */
+    public MatrixCursor add(final int col, final double val) {
+        final Storage<Double> st = current(col);
+        final Double v = st.get(col);
+        final double sum = v == null ? val : v + val;
+        st.set(col, sum);
+        m.indexCell(row, col, sum);
+        return this;
+    }
+
+    /**
+     * Calls {@code f} with column and value of every non-null cell of the
+     * pinned row. {@code f} may overwrite the cell it is called with.
+     */
+    public void foreachNonNull(final IntDoubleConsumer f) {
+        if (current == null) {
+            throw new IllegalStateException("no row pinned");
+        }
+        final Storage<Double> st = current;
+        st.foreachNonNull(col -> f.accept(col, st.get(col)));
+    }
+}
@@ -0,0 +1,335 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntConsumer;
+
+/**
+ * A lazy element-wise expression over matrices of equal dimensions.
+ *
+ * Building an expression ({@link #plus}, {@link #minus}, {@link #hadamard},
+ * {@link #scale}, {@link #axpy}, {@link #map}) only creates a small tree;
+ * nothing is computed until {@link #evaluate()}, which produces the result
+ * in a single pass: for every row, the rows of all operand matrices are
+ * looked up once, the candidate columns are gathered from their non-null
+ * cells, and every result cell is computed from the operand cells in one
+ * go, reading each operand cell at most once. No intermediate matrix is
+ * ever built.
+ *
+ * A cell of the result is non-null if it is non-null in any operand of a
+ * sum or difference, or in both operands of a Hadamard product.
+ * {@link #map} is only applied to non-null cells.
+ */
+public abstract class MatrixExpr {
+    private final int rows;
+    private final int cols;
+    /** The value of the cell last {@link #probe}d, 0.0 if it is null. */
+    double value;
+
+    private MatrixExpr(final int rows, final int cols) {
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    public static MatrixExpr of(final Matrix m) {
+        return new Leaf(m);
+    }
+
+    public int getRows() { return this.rows; }
+
+    public int getCols() { return this.cols; }
+
+    /** Makes all leaves read from row {@code row}. */
+    abstract void bind(int row);
+
+    /** Calls {@code f} with every column that may be non-null in the bound row. */
+    abstract void columns(IntConsumer f);
+
+    /**
+     * Computes cell {@code col} of the bound row into {@link #value} and
+     * returns whether it is non-null.
+     */
+    abstract boolean probe(int col);
+
+    /** Adds the leaf matrices of this expression to {@code out}. */
+    abstract void leaves(List<Matrix> out);
+
+    private void checkDims(final MatrixExpr other) {
+        if (this.rows != other.rows || this.cols != other.cols) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+    }
+
+    public MatrixExpr plus(final MatrixExpr other) {
+        checkDims(other);
+        return new Sum(this, 1.0, other, 1.0);
+    }
+
+    public MatrixExpr plus(final Matrix other) {
+        return plus(of(other));
+    }
+
+    public MatrixExpr minus(final MatrixExpr other) {
+        checkDims(other);
+        return new Sum(this, 1.0, other, -1.0);
+    }
+
+    public MatrixExpr minus(final Matrix other) {
+        return minus(of(other));
+    }
+
+    /**
+     * The element-wise (Hadamard) product.
+     */
+    public MatrixExpr hadamard(final MatrixExpr other) {
+        checkDims(other);
+        return new Hadamard(this, other);
+    }
+
+    public MatrixExpr hadamard(final Matrix other) {
+        return hadamard(of(other));
+    }
+
+    public MatrixExpr scale(final double x) {
+        return new Apply(this, v -> v * x);
+    }
+
+    /**
+     * {@code alpha * this + y}.
+     */
+    public MatrixExpr axpy(final double alpha, final MatrixExpr y) {
+        checkDims(y);
+        return new Sum(this, alpha, y, 1.0);
+    }
+
+    public MatrixExpr axpy(final double alpha, final Matrix y) {
+        return axpy(alpha, of(y));
+    }
+
+    /**
+     * Applies {@code f} to every non-null cell.
+     */
+    public MatrixExpr map(final DoubleUnaryOperator f) {
+        return new Apply(this, f);
+    }
+
+    /**
+     * Evaluates this expression into a new matrix backed by an empty copy of
+     * the storage of its first operand.
+     */
+    @SuppressWarnings("unchecked")
+    public Matrix evaluate() {
+        final List<Matrix> leaves = new ArrayList<>();
+        leaves(leaves);
+        return evaluate((NestedStorage<Double>) leaves.get(0).storage.emptyCopy());
+    }
+
+    /**
+     * Evaluates this expression into a new matrix backed by {@code st}.
+     */
+    public Matrix evaluate(final NestedStorage<Double> st) {
+        final Matrix ret = new Matrix(rows, cols, st);
+        final List<Matrix> leaves = new ArrayList<>();
+        leaves(leaves);
+
+        final TIntArrayList rowIdx = new TIntArrayList();
+        for (final Matrix m : leaves) {
+            rowIdx.addAll(m.nonNullRows());
+        }
+        rowIdx.sort();
+
+        final boolean[] seen = new boolean[cols];
+        final int[] candidates = new int[cols];
+        final int[] n = new int[1];
+        final IntConsumer collect = col -> {
+            if (!seen[col]) {
+                seen[col] = true;
+                candidates[n[0]++] = col;
+            }
+        };
+        int prev = -1;
+        for (int r = 0; r < rowIdx.size(); ++r) {
+            final int row = rowIdx.getQuick(r);
+            if (row == prev) {
+                continue;
+            }
+            prev = row;
+            bind(row);
+            n[0] = 0;
+            columns(collect);
+            if (n[0] == 0) {
+                continue;
+            }
+            Arrays.sort(candidates, 0, n[0]);
+            Storage<Double> out = null;
+            for (int i = 0; i < n[0]; ++i) {
+                final int col = candidates[i];
+                seen[col] = false;
+                if (probe(col)) {
+                    if (out == null) {
+                        out = ret.storage.get(row);
+                    }
+                    out.set(col, value);
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static class Leaf extends MatrixExpr {
+        private final Matrix m;
+        private Storage<Double> row;
+
+        Leaf(final Matrix m) {
+            super(m.getRows(), m.getCols());
+            this.m = m;
+        }
+
+        @Override
+        void bind(final int row) {
+            this.row = m.storage.get(row);
+        }
+
+        @Override
+        void columns(final IntConsumer f) {
+            row.foreachNonNull(col -> f.accept(col));
+        }
+
+        @Override
+        boolean probe(final int col) {
+            final Double v = row.get(col);
+            value = v == null ? 0.0 : v;
+            return v != null;
+        }
+
+        @Override
+        void leaves(final List<Matrix> out) {
+            out.add(m);
+        }
+    }
+
+    /** {@code alpha*a + beta*b} */
+    private static class Sum extends MatrixExpr {
+        private final MatrixExpr a;
+        private final double alpha;
+        private final MatrixExpr b;
+        private final double beta;
+
+        Sum(final MatrixExpr a, final double alpha,
+            final MatrixExpr b, final double beta) {
+            super(a.getRows(), a.getCols());
+            this.a = a;
+            this.alpha = alpha;
+            this.b = b;
+            this.beta = beta;
+        }
+
+        @Override
+        void bind(final int row) {
+            a.bind(row);
+            b.bind(row);
+        }
+
+        @Override
+        void columns(final IntConsumer f) {
+            a.columns(f);
+            b.columns(f);
+        }
+
+        @Override
+        boolean probe(final int col) {
+            final boolean hasA = a.probe(col);
+            final boolean hasB = b.probe(col);
+            value = alpha * a.value + beta * b.value;
+            return hasA || hasB;
+        }
+
+        @Override
+        void leaves(final List<Matrix> out) {
+            a.leaves(out);
+            b.leaves(out);
+        }
+    }
+
+    private static class Hadamard extends MatrixExpr {
+        private final MatrixExpr a;
+        private final MatrixExpr b;
+
+        Hadamard(final MatrixExpr a, final MatrixExpr b) {
+            super(a.getRows(), a.getCols());
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        void bind(final int row) {
+            a.bind(row);
+            b.bind(row);
+        }
+
+        @Override
+        void columns(final IntConsumer f) {
+            // only cells that are non-null in both operands survive, so
+            // the candidates of one side are enough
+            a.columns(f);
+        }
+
+        @Override
+        boolean probe(final int col) {
+            if (!a.probe(col) || !b.probe(col)) {
+                value = 0.0;
+                return false;
+            }
+            value = a.value * b.value;
+            return true;
+        }
+
+        @Override
+        void leaves(final List<Matrix> out) {
+            a.leaves(out);
+            b.leaves(out);
+        }
+    }
+
+    private static class Apply extends MatrixExpr {
+        private final MatrixExpr a;
+        private final DoubleUnaryOperator op;
+
+        Apply(final MatrixExpr a, final DoubleUnaryOperator op) {
+            super(a.getRows(), a.getCols());
+            this.a = a;
+            this.op = op;
+        }
+
+        @Override
+        void bind(final int row) {
+            a.bind(row);
+        }
+
+        @Override
+        void columns(final IntConsumer f) {
+            a.columns(f);
+        }
+
+        @Override
+        boolean probe(final int col) {
+            if (!a.probe(col)) {
+                value = 0.0;
+                return false;
+            }
+            value = op.applyAsDouble(a.value);
+            return true;
+        }
+
+        @Override
+        void leaves(final List<Matrix> out) {
+            a.leaves(out);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+
+/**
+ * LU factorization with partial pivoting of a square {@link Matrix},
+ * {@code P*A = L*U}.
+ *
+ * L (without its unit diagonal) and U are packed into the storage of one
+ * matrix: cell {@code (i, j)} of logical row {@code i} holds {@code L(i, j)}
+ * for {@code j < i} and {@code U(i, j)} otherwise. Rows are never moved in
+ * the storage; logical row {@code i} lives in storage row
+ * {@code pivot()[i]}, which is also the row of the original matrix it
+ * corresponds to. The elimination only visits the non-null cells of the
+ * pivot row.
+ */
+public class MatrixLU {
+    private final int n;
+    private final Matrix lu;
+    private final int[] perm;
+
+    /**
+     * Factors {@code lu} in place.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    MatrixLU(final Matrix lu) {
+        this.n = lu.getRows();
+        this.lu = lu;
+        this.perm = new int[n];
+        for (int i=0; i<n; ++i) {
+            perm[i] = i;
+        }
+        for (int k=0; k<n; ++k) {
+            pivot(k);
+            eliminate(k);
+        }
+    }
+
+    private static double valueOf(final Double v) {
+        return v == null ? 0.0 : v;
+    }
+
+    private Storage<Double> row(final int i) {
+        return lu.storage.get(perm[i]);
+    }
+
+    private void pivot(final int k) {
+        int p = k;
+        double max = Math.abs(valueOf(row(k).get(k)));
+        for (int i=k+1; i<n; ++i) {
+            final double v = Math.abs(valueOf(row(i).get(k)));
+            if (v > max) {
+                max = v;
+                p = i;
+            }
+        }
+        if (max == 0.0) {
+            throw new ArithmeticException("matrix is singular");
+        }
+        final int tmp = perm[p];
+        perm[p] = perm[k];
+        perm[k] = tmp;
+    }
+
+    private void eliminate(final int k) {
+        final Storage<Double> pivotRow = row(k);
+        final double pivot = pivotRow.get(k);
+        for (int i=k+1; i<n; ++i) {
+            final Storage<Double> r = row(i);
+            final Double a_ik = r.get(k);
+            if (a_ik == null || a_ik == 0.0) {
+                continue;
+            }
+            final double l = a_ik / pivot;
+            r.set(k, l);
+            pivotRow.foreachNonNull(j -> {
+                if (j > k) {
+                    r.set(j, valueOf(r.get(j)) - l * pivotRow.get(j));
+                }
+            });
+        }
+    }
+
+    public int size() { return this.n; }
+
+    /**
+     * The row permutation: row {@code i} of {@code L*U} is row
+     * {@code pivot()[i]} of the factored matrix. The returned array is
+     * shared, not copied.
+     */
+    public int[] pivot() { return this.perm; }
+
+    @SuppressWarnings("unchecked")
+    public Matrix getL() {
+        final Matrix ret = Matrix.identity(n,
+                (NestedStorage<Double>) lu.storage.emptyCopy());
+        for (int i=0; i<n; ++i) {
+            final int row = i;
+            final Storage<Double> r = row(i);
+            r.foreachNonNull(j -> {
+                if (j < row) {
+                    ret.put(row, j, r.get(j));
+                }
+            });
+        }
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Matrix getU() {
+        final Matrix ret = new Matrix(n, n,
+                (NestedStorage<Double>) lu.storage.emptyCopy());
+        for (int i=0; i<n; ++i) {
+            final int row = i;
+            final Storage<Double> r = row(i);
+            r.foreachNonNull(j -> {
+                if (j >= row) {
+                    ret.put(row, j, r.get(j));
+                }
+            });
+        }
+        return ret;
+    }
+
+    public double[] solve(final double[] b) {
+        return solve(b, new double[n]);
+    }
+
+    /**
+     * Solves {@code A*x = b} for {@code x}, writing the solution into the
+     * caller supplied buffer {@code x}, which must not be {@code b}.
+     */
+    public double[] solve(final double[] b, final double[] x) {
+        if (b.length != n || x.length != n) {
+            throw new IllegalArgumentException("vectors must have length "+n);
+        }
+        if (b == x) {
+            throw new IllegalArgumentException("b and x must be different buffers");
+        }
+        for (int i=0; i<n; ++i) {
+            final int row = i;
+            final Storage<Double> r = row(i);
+            x[row] = b[perm[row]];
+            r.foreachNonNull(j -> {
+                if (j < row) {
+                    x[row] -= r.get(j) * x[j];
+                }
+            });
+        }
+        for (int i=n-1; i>=0; --i) {
+            final int row = i;
+            final Storage<Double> r = row(i);
+            r.foreachNonNull(j -> {
+                if (j > row) {
+                    x[row] -= r.get(j) * x[j];
+                }
+            });
+            x[row] /= r.get(row);
+        }
+        return x;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Matrix solve(final Matrix B) {
+        return solve(B, new Matrix(n, B.getCols(),
+                (NestedStorage<Double>) B.storage.emptyCopy()));
+    }
+
+    /**
+     * Solves {@code A*X = B} column by column, writing the non-zero cells of
+     * the solution into {@code X}, and zeroes into cells of {@code X} that
+     * hold a value from an earlier solve. Two scratch vectors are shared by
+     * all columns.
+     */
+    public Matrix solve(final Matrix B, final Matrix X) {
+        if (B.getRows() != n || X.getRows() != n || X.getCols() != B.getCols()) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        final double[] b = new double[n];
+        final double[] x = new double[n];
+        for (int col=0; col<B.getCols(); ++col) {
+            for (int i=0; i<n; ++i) {
+                b[i] = B.get(i, col);
+            }
+            solve(b, x);
+            for (int i=0; i<n; ++i) {
+                if (x[i] != 0.0 || X.get(i, col) != 0.0) {
+                    X.put(i, col, x[i]);
+                }
+            }
+        }
+        return X;
+    }
+}
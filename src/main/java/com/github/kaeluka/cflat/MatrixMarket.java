@@ -0,0 +1,242 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Streaming reader for Matrix Market coordinate files
+ * ({@code %%MatrixMarket matrix coordinate real|integer|pattern
+ * general|symmetric|skew-symmetric}).
+ *
+ * Entries are parsed into a fixed size buffer of primitive triplets. A full
+ * buffer is sorted by row and flushed into the matrix one row at a time,
+ * so every touched row's {@link Storage} is looked up once per batch and
+ * filled in one go. Apart from the resulting matrix, memory use is bounded
+ * by the batch size, whatever the size of the input.
+ */
+public class MatrixMarket {
+    public static final int DEFAULT_BATCH = 1 << 16;
+
+    private enum Field { REAL, INTEGER, PATTERN }
+    private enum Symmetry { GENERAL, SYMMETRIC, SKEW_SYMMETRIC }
+
+    private final NestedStorage<Double> storage;
+    private final int[] rowBuf;
+    private final int[] colBuf;
+    private final double[] valBuf;
+    private final long[] order;
+    private int size = 0;
+
+    private MatrixMarket(final NestedStorage<Double> storage, final int batch) {
+        this.storage = storage;
+        this.rowBuf = new int[batch];
+        this.colBuf = new int[batch];
+        this.valBuf = new double[batch];
+        this.order = new long[batch];
+    }
+
+    public static Matrix read(final Path path,
+                              final NestedStorage<Double> st) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.US_ASCII)) {
+            return read(in, st, DEFAULT_BATCH);
+        }
+    }
+
+    public static Matrix read(final Reader in,
+                              final NestedStorage<Double> st) throws IOException {
+        return read(in, st, DEFAULT_BATCH);
+    }
+
+    /**
+     * Reads a coordinate matrix from {@code in} into a new matrix backed by
+     * {@code st}, buffering at most {@code batch} entries at a time.
+     *
+     * @throws IOException if reading fails or the input is not a supported
+     *                     Matrix Market coordinate file
+     */
+    public static Matrix read(final Reader in,
+                              final NestedStorage<Double> st,
+                              final int batch) throws IOException {
+        if (batch <= 1) {
+            throw new IllegalArgumentException("batch size must be at least 2");
+        }
+        final BufferedReader reader = in instanceof BufferedReader
+                ? (BufferedReader) in
+                : new BufferedReader(in);
+
+        final String header = reader.readLine();
+        if (header == null) {
+            throw new IOException("empty Matrix Market file");
+        }
+        final String[] banner = header.trim().toLowerCase().split("\\s+");
+        if (banner.length != 5
+                || !banner[0].equals("%%matrixmarket")
+                || !banner[1].equals("matrix")) {
+            throw new IOException("not a Matrix Market matrix header: "+header);
+        }
+        if (!banner[2].equals("coordinate")) {
+            throw new IOException("only coordinate matrices are supported, got "+banner[2]);
+        }
+        final Field field;
+        switch (banner[3]) {
+            case "real": field = Field.REAL; break;
+            case "integer": field = Field.INTEGER; break;
+            case "pattern": field = Field.PATTERN; break;
+            default: throw new IOException("unsupported field type "+banner[3]);
+        }
+        final Symmetry symmetry;
+        switch (banner[4]) {
+            case "general": symmetry = Symmetry.GENERAL; break;
+            case "symmetric": symmetry = Symmetry.SYMMETRIC; break;
+            case "skew-symmetric": symmetry = Symmetry.SKEW_SYMMETRIC; break;
+            default: throw new IOException("unsupported symmetry "+banner[4]);
+        }
+
+        String line;
+        do {
+            line = reader.readLine();
+        } while (line != null && skip(line));
+        if (line == null) {
+            throw new IOException("missing size line");
+        }
+        final Tokenizer sizeLine = new Tokenizer(line);
+        final int rows = sizeLine.nextInt();
+        final int cols = sizeLine.nextInt();
+        final long entries = sizeLine.nextLong();
+
+        final Matrix ret = new Matrix(rows, cols, st);
+        final MatrixMarket loader = new MatrixMarket(st, batch);
+        long seen = 0;
+        while ((line = reader.readLine()) != null) {
+            if (skip(line)) {
+                continue;
+            }
+            final Tokenizer tok = new Tokenizer(line);
+            final int row = tok.nextInt() - 1;
+            final int col = tok.nextInt() - 1;
+            if (row < 0 || row >= rows || col < 0 || col >= cols) {
+                throw new IOException("entry ("+(row+1)+", "+(col+1)
+                        +") is outside of "+rows+" x "+cols+" matrix");
+            }
+            final double val = field == Field.PATTERN ? 1.0 : tok.nextDouble();
+            loader.add(row, col, val);
+            if (row != col) {
+                if (symmetry == Symmetry.SYMMETRIC) {
+                    loader.add(col, row, val);
+                } else if (symmetry == Symmetry.SKEW_SYMMETRIC) {
+                    loader.add(col, row, -val);
+                }
+            }
+            seen++;
+        }
+        if (seen != entries) {
+            throw new IOException("expected "+entries+" entries, found "+seen);
+        }
+        loader.flush();
+        return ret;
+    }
+
+    /**
+     * Whether {@code line} is blank or a comment, ignoring leading
+     * whitespace.
+     */
+    private static boolean skip(final String line) {
+        final int len = line.length();
+        int i = 0;
+        while (i < len && Character.isWhitespace(line.charAt(i))) {
+            i++;
+        }
+        return i == len || line.charAt(i) == '%';
+    }
+
+    private void add(final int row, final int col, final double val) {
+        if (size == rowBuf.length) {
+            flush();
+        }
+        rowBuf[size] = row;
+        colBuf[size] = col;
+        valBuf[size] = val;
+        size++;
+    }
+
+    /**
+     * Writes the buffered entries grouped by row. Sorting (row, position)
+     * keys keeps the file order within every row, so later duplicates
+     * overwrite earlier ones as with sequential puts.
+     */
+    private void flush() {
+        for (int i=0; i<size; ++i) {
+            order[i] = ((long) rowBuf[i] << 32) | i;
+        }
+        Arrays.sort(order, 0, size);
+        int i = 0;
+        while (i < size) {
+            final int row = (int) (order[i] >>> 32);
+            final Storage<Double> out = storage.get(row);
+            for (; i<size && (int) (order[i] >>> 32) == row; ++i) {
+                final int pos = (int) order[i];
+                out.set(colBuf[pos], valBuf[pos]);
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Splits a line at whitespace without allocating intermediate arrays.
+     */
+    private static class Tokenizer {
+        private final String line;
+        private int pos = 0;
+
+        Tokenizer(final String line) {
+            this.line = line;
+        }
+
+        private String next() throws IOException {
+            final int len = line.length();
+            while (pos < len && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+            final int start = pos;
+            while (pos < len && !Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IOException("malformed line: "+line);
+            }
+            return line.substring(start, pos);
+        }
+
+        int nextInt() throws IOException {
+            try {
+                return Integer.parseInt(next());
+            } catch (NumberFormatException e) {
+                throw new IOException("malformed line: "+line, e);
+            }
+        }
+
+        long nextLong() throws IOException {
+            try {
+                return Long.parseLong(next());
+            } catch (NumberFormatException e) {
+                throw new IOException("malformed line: "+line, e);
+            }
+        }
+
+        double nextDouble() throws IOException {
+            try {
+                return Double.parseDouble(next());
+            } catch (NumberFormatException e) {
+                throw new IOException("malformed line: "+line, e);
+            }
+        }
+    }
+}
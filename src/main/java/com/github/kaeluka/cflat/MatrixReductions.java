@@ -0,0 +1,297 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.Storage;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Row, column and whole-matrix reductions over the non-null cells of a
+ * {@link Matrix}.
+ *
+ * Every reduction visits each row's non-null cells once through
+ * {@code foreachNonNull}; cells that were never written are never looked
+ * at. Each method has a variant that takes a {@link ForkJoinPool} and a
+ * grain size and splits the non-null rows into tasks of at most that many
+ * rows. Row-wise results are written to per-row slots, column-wise results
+ * are summed from per-task partial arrays.
+ */
+public final class MatrixReductions {
+    private MatrixReductions() {}
+
+    private interface RowReduction {
+        double apply(Storage<Double> row);
+    }
+
+    private static double sum(final Storage<Double> row) {
+        final double[] acc = new double[1];
+        row.foreachNonNull(col -> acc[0] += row.get(col));
+        return acc[0];
+    }
+
+    private static double sumOfAbs(final Storage<Double> row) {
+        final double[] acc = new double[1];
+        row.foreachNonNull(col -> acc[0] += Math.abs(row.get(col)));
+        return acc[0];
+    }
+
+    private static double sumOfSquares(final Storage<Double> row) {
+        final double[] acc = new double[1];
+        row.foreachNonNull(col -> {
+            final double v = row.get(col);
+            acc[0] += v * v;
+        });
+        return acc[0];
+    }
+
+    private static double count(final Storage<Double> row) {
+        final double[] acc = new double[1];
+        row.foreachNonNull(col -> acc[0]++);
+        return acc[0];
+    }
+
+    private static double min(final Storage<Double> row) {
+        final double[] acc = { Double.POSITIVE_INFINITY };
+        row.foreachNonNull(col -> acc[0] = Math.min(acc[0], row.get(col)));
+        return acc[0];
+    }
+
+    private static double max(final Storage<Double> row) {
+        final double[] acc = { Double.NEGATIVE_INFINITY };
+        row.foreachNonNull(col -> acc[0] = Math.max(acc[0], row.get(col)));
+        return acc[0];
+    }
+
+    /**
+     * Applies {@code f} to every non-null row. Rows without values keep
+     * {@code empty}.
+     */
+    private static double[] perRow(final Matrix m,
+                                   final ForkJoinPool pool,
+                                   final int grain,
+                                   final double empty,
+                                   final RowReduction f) {
+        final double[] ret = new double[m.getRows()];
+        if (empty != 0.0) {
+            Arrays.fill(ret, empty);
+        }
+        m.foreachNonNullRow(pool, grain, (r, row) -> ret[row] = f.apply(r));
+        return ret;
+    }
+
+    private static int[] toInts(final double[] counts) {
+        final int[] ret = new int[counts.length];
+        for (int i=0; i<counts.length; ++i) {
+            ret[i] = (int) counts[i];
+        }
+        return ret;
+    }
+
+    public static double[] rowSums(final Matrix m) {
+        return rowSums(m, null, 0);
+    }
+
+    public static double[] rowSums(final Matrix m, final ForkJoinPool pool, final int grain) {
+        return perRow(m, pool, grain, 0.0, MatrixReductions::sum);
+    }
+
+    public static int[] rowNonZeros(final Matrix m) {
+        return rowNonZeros(m, null, 0);
+    }
+
+    public static int[] rowNonZeros(final Matrix m, final ForkJoinPool pool, final int grain) {
+        return toInts(perRow(m, pool, grain, 0.0, MatrixReductions::count));
+    }
+
+    public static long nonZeros(final Matrix m) {
+        return nonZeros(m, null, 0);
+    }
+
+    /**
+     * The number of non-null cells.
+     */
+    public static long nonZeros(final Matrix m, final ForkJoinPool pool, final int grain) {
+        long ret = 0;
+        for (final int n : rowNonZeros(m, pool, grain)) {
+            ret += n;
+        }
+        return ret;
+    }
+
+    public static double frobeniusNorm(final Matrix m) {
+        return frobeniusNorm(m, null, 0);
+    }
+
+    public static double frobeniusNorm(final Matrix m, final ForkJoinPool pool, final int grain) {
+        double ret = 0.0;
+        for (final double s : perRow(m, pool, grain, 0.0, MatrixReductions::sumOfSquares)) {
+            ret += s;
+        }
+        return Math.sqrt(ret);
+    }
+
+    public static double infinityNorm(final Matrix m) {
+        return infinityNorm(m, null, 0);
+    }
+
+    /**
+     * The largest absolute row sum.
+     */
+    public static double infinityNorm(final Matrix m, final ForkJoinPool pool, final int grain) {
+        double ret = 0.0;
+        for (final double s : perRow(m, pool, grain, 0.0, MatrixReductions::sumOfAbs)) {
+            ret = Math.max(ret, s);
+        }
+        return ret;
+    }
+
+    public static double oneNorm(final Matrix m) {
+        return oneNorm(m, null, 0);
+    }
+
+    /**
+     * The largest absolute column sum.
+     */
+    public static double oneNorm(final Matrix m, final ForkJoinPool pool, final int grain) {
+        double ret = 0.0;
+        for (final double s : perCol(m, pool, grain, ColReduction.ABS_SUM)) {
+            ret = Math.max(ret, s);
+        }
+        return ret;
+    }
+
+    public static double min(final Matrix m) {
+        return min(m, null, 0);
+    }
+
+    /**
+     * The smallest cell of the matrix. Cells that were never written count
+     * as {@code 0.0}.
+     */
+    public static double min(final Matrix m, final ForkJoinPool pool, final int grain) {
+        final double[] mins = perRow(m, pool, grain, Double.POSITIVE_INFINITY, MatrixReductions::min);
+        double ret = Double.POSITIVE_INFINITY;
+        for (final double v : mins) {
+            ret = Math.min(ret, v);
+        }
+        if (nonZeros(m, pool, grain) < (long) m.getRows() * m.getCols()) {
+            ret = Math.min(ret, 0.0);
+        }
+        return ret;
+    }
+
+    public static double max(final Matrix m) {
+        return max(m, null, 0);
+    }
+
+    /**
+     * The largest cell of the matrix. Cells that were never written count
+     * as {@code 0.0}.
+     */
+    public static double max(final Matrix m, final ForkJoinPool pool, final int grain) {
+        final double[] maxs = perRow(m, pool, grain, Double.NEGATIVE_INFINITY, MatrixReductions::max);
+        double ret = Double.NEGATIVE_INFINITY;
+        for (final double v : maxs) {
+            ret = Math.max(ret, v);
+        }
+        if (nonZeros(m, pool, grain) < (long) m.getRows() * m.getCols()) {
+            ret = Math.max(ret, 0.0);
+        }
+        return ret;
+    }
+
+    private enum ColReduction { SUM, ABS_SUM, COUNT }
+
+    public static double[] colSums(final Matrix m) {
+        return colSums(m, null, 0);
+    }
+
+    public static double[] colSums(final Matrix m, final ForkJoinPool pool, final int grain) {
+        return perCol(m, pool, grain, ColReduction.SUM);
+    }
+
+    public static int[] colNonZeros(final Matrix m) {
+        return colNonZeros(m, null, 0);
+    }
+
+    public static int[] colNonZeros(final Matrix m, final ForkJoinPool pool, final int grain) {
+        return toInts(perCol(m, pool, grain, ColReduction.COUNT));
+    }
+
+    private static double[] perCol(final Matrix m,
+                                   final ForkJoinPool pool,
+                                   final int grain,
+                                   final ColReduction f) {
+        final int[] rowIdx = m.nonNullRows();
+        final ColTask task = new ColTask(m.rowStorages(), m.getCols(), rowIdx, 0, rowIdx.length,
+                pool == null ? Math.max(rowIdx.length, 1) : grain, f);
+        if (pool == null) {
+            return task.compute();
+        }
+        if (grain <= 0) {
+            throw new IllegalArgumentException("grain must be positive");
+        }
+        return pool.invoke(task);
+    }
+
+    /**
+     * Accumulates the column reduction of a range of rows into a private
+     * array; the partial arrays of both halves of a split are added. Rows
+     * are read from storages looked up before forking.
+     */
+    private static class ColTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final Storage<Double>[] rows;
+        private final int cols;
+        private final int[] rowIdx;
+        private final int from;
+        private final int to;
+        private final int grain;
+        private final ColReduction f;
+
+        ColTask(final Storage<Double>[] rows, final int cols,
+                final int[] rowIdx, final int from, final int to,
+                final int grain, final ColReduction f) {
+            this.rows = rows;
+            this.cols = cols;
+            this.rowIdx = rowIdx;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.f = f;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > grain) {
+                final int mid = (from + to) >>> 1;
+                final ColTask right = new ColTask(rows, cols, rowIdx, mid, to, grain, f);
+                right.fork();
+                final double[] ret = new ColTask(rows, cols, rowIdx, from, mid, grain, f).compute();
+                final double[] other = right.join();
+                for (int j=0; j<ret.length; ++j) {
+                    ret[j] += other[j];
+                }
+                return ret;
+            }
+            final double[] ret = new double[cols];
+            for (int r=from; r<to; ++r) {
+                final Storage<Double> row = rows[rowIdx[r]];
+                switch (f) {
+                    case SUM:
+                        row.foreachNonNull(col -> ret[col] += row.get(col));
+                        break;
+                    case ABS_SUM:
+                        row.foreachNonNull(col -> ret[col] += Math.abs(row.get(col)));
+                        break;
+                    case COUNT:
+                        row.foreachNonNull(col -> ret[col]++);
+                        break;
+                }
+            }
+            return ret;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+
+/**
+ * A window onto a {@link Matrix}: a block of its rows and columns,
+ * optionally transposed. Views don't copy any cells; they share the
+ * {@link NestedStorage} of the matrix they were taken from and translate
+ * indices on every access, so writes through a view are visible in the
+ * matrix and vice versa.
+ *
+ * Cell {@code (i, j)} of a view is cell
+ * {@code (rowOffset+i, colOffset+j)} of the base matrix, or
+ * {@code (rowOffset+j, colOffset+i)} if the view is transposed.
+ */
+public class MatrixView {
+    private final Matrix base;
+    private final int rowOffset;
+    private final int colOffset;
+    private final int rows;
+    private final int cols;
+    private final boolean transposed;
+
+    MatrixView(final Matrix base,
+               final int rowOffset,
+               final int colOffset,
+               final int rows,
+               final int cols,
+               final boolean transposed) {
+        final int baseRows = transposed ? cols : rows;
+        final int baseCols = transposed ? rows : cols;
+        if (rowOffset < 0 || colOffset < 0 || baseRows < 0 || baseCols < 0
+                || rowOffset + baseRows > base.getRows()
+                || colOffset + baseCols > base.getCols()) {
+            throw new IndexOutOfBoundsException("view of "+baseRows+" x "
+                    +baseCols+" cells at ("+rowOffset+", "+colOffset
+                    +") exceeds "+base.getRows()+" x "+base.getCols()
+                    +" matrix");
+        }
+        this.base = base;
+        this.rowOffset = rowOffset;
+        this.colOffset = colOffset;
+        this.rows = rows;
+        this.cols = cols;
+        this.transposed = transposed;
+    }
+
+    public int getRows() { return this.rows; }
+
+    public int getCols() { return this.cols; }
+
+    public boolean isTransposed() { return this.transposed; }
+
+    Matrix base() { return this.base; }
+
+    int rowOffset() { return this.rowOffset; }
+
+    int colOffset() { return this.colOffset; }
+
+    private void checkIdx(final int i, final int j) {
+        if (i < 0 || i >= rows || j < 0 || j >= cols) {
+            throw new IndexOutOfBoundsException("cell ("+i+", "+j
+                    +") is outside of "+rows+" x "+cols+" view");
+        }
+    }
+
+    public double get(final int i, final int j) {
+        checkIdx(i, j);
+        return transposed
+                ? base.get(rowOffset+j, colOffset+i)
+                : base.get(rowOffset+i, colOffset+j);
+    }
+
+    public MatrixView put(final int i, final int j, final double val) {
+        checkIdx(i, j);
+        if (transposed) {
+            base.put(rowOffset+j, colOffset+i, val);
+        } else {
+            base.put(rowOffset+i, colOffset+j, val);
+        }
+        return this;
+    }
+
+    public MatrixView transpose() {
+        return new MatrixView(base, rowOffset, colOffset, cols, rows, !transposed);
+    }
+
+    /**
+     * The view of rows {@code rowStart .. rowEnd-1} and columns
+     * {@code colStart .. colEnd-1} of this view.
+     */
+    public MatrixView view(final int rowStart, final int rowEnd,
+                           final int colStart, final int colEnd) {
+        if (rowStart < 0 || colStart < 0 || rowEnd > rows || colEnd > cols
+                || rowStart > rowEnd || colStart > colEnd) {
+            throw new IndexOutOfBoundsException("range ["+rowStart+", "+rowEnd
+                    +") x ["+colStart+", "+colEnd+") is outside of "+rows
+                    +" x "+cols+" view");
+        }
+        return transposed
+                ? new MatrixView(base, rowOffset+colStart, colOffset+rowStart,
+                        rowEnd-rowStart, colEnd-colStart, true)
+                : new MatrixView(base, rowOffset+rowStart, colOffset+colStart,
+                        rowEnd-rowStart, colEnd-colStart, false);
+    }
+
+    /**
+     * Copies the cells of this view into a new matrix backed by {@code st}.
+     */
+    public Matrix toMatrix(final NestedStorage<Double> st) {
+        final Matrix ret = new Matrix(rows, cols, st);
+        final int baseRows = transposed ? cols : rows;
+        final int baseCols = transposed ? rows : cols;
+        for (final int r : base.nonNullRows()) {
+            if (r < rowOffset || r >= rowOffset+baseRows) {
+                continue;
+            }
+            final int viewIdx = r - rowOffset;
+            final Storage<Double> row = base.storage.get(r);
+            row.foreachNonNull(c -> {
+                final int col = c - colOffset;
+                if (col >= 0 && col < baseCols) {
+                    if (transposed) {
+                        ret.put(col, viewIdx, row.get(c));
+                    } else {
+                        ret.put(viewIdx, col, row.get(c));
+                    }
+                }
+            });
+        }
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Matrix toMatrix() {
+        return toMatrix((NestedStorage<Double>) base.storage.emptyCopy());
+    }
+
+    @Override
+    public String toString() {
+        return "MatrixView("+this.rows+" x "+this.cols
+                +(transposed ? ", transposed" : "")
+                +" at ("+rowOffset+", "+colOffset+") of "
+                +base.getRows()+" x "+base.getCols()+")";
+    }
+}
@@ -1,24 +1,53 @@
 package com.github.kaeluka.cflat;
 
-import com.github.kaeluka.cflat.util.Mutable;
-
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.DoubleSupplier;
 
 public class NativeMatrix {
+    /**
+     * Default tile sizes for {@link #multiplyTiled(NativeMatrix)}. A
+     * 128x512 tile of the right operand takes 512KB, which fits into a
+     * typical L2, while a single tile row (4KB) stays in L1.
+     */
+    public static final int DEFAULT_BLOCK_ROWS = 64;
+    public static final int DEFAULT_BLOCK_INNER = 128;
+    public static final int DEFAULT_BLOCK_COLS = 512;
+
+    /**
+     * Default panel width and row stripe height of {@link #luBlocked()}.
+     */
+    public static final int DEFAULT_LU_BLOCK = 64;
+    public static final int DEFAULT_LU_GRAIN = 32;
+
     private final int rows;
     private final int cols;
-    private final Double[] data;
+    /**
+     * Row-major cell values. Cells that were never written are {@code 0.0}.
+     */
+    private final double[] data;
 
     public NativeMatrix(final int rows, final int cols) {
-        this(rows, cols, new Double[rows*cols]);
+        this(rows, cols, new double[rows*cols]);
     }
-    public NativeMatrix(final int rows, final int cols, Double[] data) {
+    public NativeMatrix(final int rows, final int cols, double[] data) {
+        if (data.length != rows*cols) {
+            throw new IllegalArgumentException("expected "+(rows*cols)
+                    +" cells for a "+rows+" x "+cols+" matrix, got "
+                    +data.length);
+        }
         this.rows = rows;
         this.cols = cols;
         this.data = data;
     }
 
+    /**
+     * The row-major cell array backing this matrix. Shared, not copied.
+     */
+    double[] data() {
+        return this.data;
+    }
+
     public int getRows() {
         return this.rows;
     }
@@ -40,12 +69,7 @@ public class NativeMatrix {
     }
 
     public double get(int i, int j) {
-        final Double ret = data[i * cols + j];
-        if (ret != null) {
-            return ret;
-        } else {
-            return 0.0;
-        }
+        return data[i * cols + j];
     }
 
     public NativeMatrix put(int i, int j, double val) {
@@ -54,40 +78,99 @@ public class NativeMatrix {
     }
 
     public NativeMatrix multiply(final double x) {
-        NativeMatrix res = new NativeMatrix(this.rows, this.cols);
-        for (int row=0; row<rows; ++row) {
-            for (int col=0; col<cols; ++col) {
-                res.put(row, col, this.get(row, col)*x);
-            }
-        }
-        return res;
+        final double[] res = new double[data.length];
+        DenseKernels.scale(x, data, 0, res, 0, data.length);
+        return new NativeMatrix(this.rows, this.cols, res);
     }
 
     public NativeMatrix multiply(NativeMatrix other) {
-        NativeMatrix res = new NativeMatrix(this.rows, other.cols);
         if (this.cols != other.rows) {
             throw new IllegalArgumentException("matrix dimensions don't match!");
         }
+        final int n = other.cols;
+        final double[] a = this.data;
+        final double[] b = other.data;
+        final double[] c = new double[this.rows*n];
+        // i/k/j order: the innermost loop streams through one row of
+        // `other` and one row of the result
         for (int i=0; i<rows; ++i) {
-            for (int j=0; j<other.rows; ++j) {
-                Mutable<Double> cell = new Mutable<>(0.0);
-                for (int k=0; k<cols; ++k) {
-                    cell.x += this.get(i, k) * other.get(k, j);
+            final int cRow = i*n;
+            for (int k=0; k<cols; ++k) {
+                final double a_ik = a[i*cols+k];
+                if (a_ik == 0.0) {
+                    continue;
+                }
+                DenseKernels.axpy(a_ik, b, k*n, c, cRow, n);
+            }
+        }
+        return new NativeMatrix(this.rows, n, c);
+    }
+
+    public NativeMatrix multiplyTiled(NativeMatrix other) {
+        return multiplyTiled(other,
+                DEFAULT_BLOCK_ROWS, DEFAULT_BLOCK_INNER, DEFAULT_BLOCK_COLS);
+    }
+
+    /**
+     * Cache-blocked variant of {@link #multiply(NativeMatrix)}. The
+     * computation is split into tiles of {@code blockRows} rows of this
+     * matrix, {@code blockInner} entries of the shared dimension and
+     * {@code blockCols} columns of {@code other}, so that the touched parts
+     * of both operands and of the result stay cache resident while a tile
+     * is being computed.
+     */
+    public NativeMatrix multiplyTiled(final NativeMatrix other,
+                                      final int blockRows,
+                                      final int blockInner,
+                                      final int blockCols) {
+        if (this.cols != other.rows) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        if (blockRows <= 0 || blockInner <= 0 || blockCols <= 0) {
+            throw new IllegalArgumentException("block sizes must be positive");
+        }
+        final int n = other.cols;
+        final double[] a = this.data;
+        final double[] b = other.data;
+        final double[] c = new double[this.rows*n];
+        for (int i0=0; i0<rows; i0+=blockRows) {
+            final int iMax = Math.min(i0+blockRows, rows);
+            for (int k0=0; k0<cols; k0+=blockInner) {
+                final int kMax = Math.min(k0+blockInner, cols);
+                for (int j0=0; j0<n; j0+=blockCols) {
+                    final int jMax = Math.min(j0+blockCols, n);
+                    int i=i0;
+                    // four rows at a time: every loaded element of `other`
+                    // is used four times before it is evicted
+                    for (; i+3<iMax; i+=4) {
+                        for (int k=k0; k<kMax; ++k) {
+                            DenseKernels.axpy4(
+                                    a[i*cols+k], a[(i+1)*cols+k],
+                                    a[(i+2)*cols+k], a[(i+3)*cols+k],
+                                    b, k*n+j0, c, i*n+j0, n, jMax-j0);
+                        }
+                    }
+                    for (; i<iMax; ++i) {
+                        final int cRow = i*n;
+                        for (int k=k0; k<kMax; ++k) {
+                            DenseKernels.axpy(a[i*cols+k], b, k*n+j0, c, cRow+j0, jMax-j0);
+                        }
+                    }
                 }
-                res.put(i, j, cell.x);
             }
         }
-        return res;
+        return new NativeMatrix(this.rows, n, c);
     }
 
     public NativeMatrix transpose() {
-        final NativeMatrix ret = new NativeMatrix(this.cols, this.rows);
+        final double[] res = new double[data.length];
         for (int row=0; row<rows; ++row) {
+            final int src = row*cols;
             for (int col=0; col<cols; ++col) {
-                ret.put(col, row, this.get(row, col));
+                res[col*rows+row] = data[src+col];
             }
         }
-        return ret;
+        return new NativeMatrix(this.cols, this.rows, res);
     }
 
     public String pretty() {
@@ -113,19 +196,23 @@ public class NativeMatrix {
     public NativeMatrix[] LUDecomposition() {
         assert(rows == cols);
         final int N = rows;
-        NativeMatrix L = NativeMatrix.identity(N);
-        NativeMatrix U = this.copy();
+        final NativeMatrix L = NativeMatrix.identity(N);
+        final NativeMatrix U = this.copy();
+        final double[] l = L.data;
+        final double[] u = U.data;
 
         for (int n=0; n<N-1; ++n) {
-//            System.out.println(U.pretty());
+            final int pivotRow = n*N;
+            final double a_nn = u[pivotRow+n];
             for (int r=n+1; r<N; ++r) {
-                final double a_nn = U.get(n,n);
-                final double a_n1n = U.get(r, n);
-                final double multiplier = a_n1n/a_nn;
+                final int row = r*N;
+                final double multiplier = u[row+n]/a_nn;
+                l[row+n] = multiplier;
+                if (multiplier == 0.0) {
+                    continue;
+                }
                 for (int i = n; i < N; ++i) {
-                    U.put(r, i,
-                            U.get(r, i) - multiplier * U.get(n, i));
-                    L.put(r, n, multiplier);
+                    u[row+i] -= multiplier * u[pivotRow+i];
                 }
             }
         }
@@ -133,6 +220,63 @@ public class NativeMatrix {
         return new NativeMatrix[]{ L, U };
     }
 
+    /**
+     * Computes the LU factorization with partial pivoting of a copy of this
+     * matrix.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public NativeMatrixLU lu() {
+        return copy().luInPlace();
+    }
+
+    /**
+     * Computes the LU factorization with partial pivoting, overwriting this
+     * matrix with the packed factors.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public NativeMatrixLU luInPlace() {
+        if (rows != cols) {
+            throw new IllegalArgumentException("LU factorization needs a square matrix");
+        }
+        return NativeMatrixLU.factor(rows, data);
+    }
+
+    public NativeMatrixLU luBlocked() {
+        return copy().luBlockedInPlace(ForkJoinPool.commonPool(),
+                DEFAULT_LU_BLOCK, DEFAULT_LU_GRAIN);
+    }
+
+    /**
+     * Computes the LU factorization with partial pivoting of a copy of this
+     * matrix with a blocked algorithm whose trailing updates run on
+     * {@code pool}. See {@link #luBlockedInPlace(ForkJoinPool, int, int)}.
+     */
+    public NativeMatrixLU luBlocked(final ForkJoinPool pool,
+                                    final int blockSize,
+                                    final int grain) {
+        return copy().luBlockedInPlace(pool, blockSize, grain);
+    }
+
+    /**
+     * Computes the LU factorization with partial pivoting in place, one
+     * panel of {@code blockSize} columns at a time. Panels are factored on
+     * the calling thread; the update of the trailing submatrix after every
+     * panel is split into stripes of {@code grain} rows that run on
+     * {@code pool}.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public NativeMatrixLU luBlockedInPlace(final ForkJoinPool pool,
+                                           final int blockSize,
+                                           final int grain) {
+        if (rows != cols) {
+            throw new IllegalArgumentException("LU factorization needs a square matrix");
+        }
+        return NativeMatrixLU.factorBlocked(rows, data, pool, blockSize, grain);
+    }
+
     @Override
     public String toString() {
         return "Matrix("+this.rows+" x "+this.cols+")";
@@ -0,0 +1,306 @@
+package com.github.kaeluka.cflat;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * LU factorization with partial pivoting of a square {@link NativeMatrix},
+ * {@code P*A = L*U}.
+ *
+ * L (without its unit diagonal) and U are packed into one row-major array:
+ * cell {@code (i, j)} holds {@code L(i, j)} for {@code j < i} and
+ * {@code U(i, j)} otherwise. Row {@code i} of the packed factors corresponds
+ * to row {@code pivot()[i]} of the original matrix. A factorization can be
+ * reused for any number of right hand sides.
+ */
+public class NativeMatrixLU {
+    private final int n;
+    private final double[] lu;
+    private final int[] perm;
+
+    private NativeMatrixLU(final int n, final double[] lu) {
+        this.n = n;
+        this.lu = lu;
+        this.perm = new int[n];
+        for (int i=0; i<n; ++i) {
+            perm[i] = i;
+        }
+    }
+
+    /**
+     * Factors {@code lu}, a row-major {@code n x n} matrix, in place, one
+     * column at a time.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    static NativeMatrixLU factor(final int n, final double[] lu) {
+        final NativeMatrixLU ret = new NativeMatrixLU(n, lu);
+        for (int k=0; k<n; ++k) {
+            ret.pivot(k);
+            ret.eliminate(k, n);
+        }
+        return ret;
+    }
+
+    /**
+     * Factors {@code lu}, a row-major {@code n x n} matrix, in place with a
+     * right-looking blocked algorithm. For every panel of
+     * {@code blockSize} columns:
+     * <ol>
+     *     <li>the panel is factored with partial pivoting on the calling
+     *     thread (row swaps cover whole rows),</li>
+     *     <li>the block row right of the panel is solved against the
+     *     panel's unit lower triangle, and</li>
+     *     <li>the trailing submatrix is updated with the product of the
+     *     panel and the block row, as tiled multiplies of
+     *     {@code grain}-row stripes on {@code pool}.</li>
+     * </ol>
+     * The trailing update dominates the cost and is computed with
+     * {@code blockSize} reuses of every loaded block row element, instead of
+     * one pass over the whole trailing matrix per column.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    static NativeMatrixLU factorBlocked(final int n,
+                                        final double[] lu,
+                                        final ForkJoinPool pool,
+                                        final int blockSize,
+                                        final int grain) {
+        if (blockSize <= 0 || grain <= 0) {
+            throw new IllegalArgumentException("block size and grain must be positive");
+        }
+        final NativeMatrixLU ret = new NativeMatrixLU(n, lu);
+        for (int k0=0; k0<n; k0+=blockSize) {
+            final int k1 = Math.min(k0+blockSize, n);
+            for (int k=k0; k<k1; ++k) {
+                ret.pivot(k);
+                ret.eliminate(k, k1);
+            }
+            if (k1 == n) {
+                break;
+            }
+            ret.solveBlockRow(k0, k1);
+            pool.invoke(ret.new TrailingUpdate(k0, k1, k1, n, grain));
+        }
+        return ret;
+    }
+
+    /**
+     * Replaces the block row {@code A[k0..k1-1][k1..n-1]} by
+     * {@code L11^-1 * A[k0..k1-1][k1..n-1]}, where {@code L11} is the unit
+     * lower triangle of the factored panel.
+     */
+    private void solveBlockRow(final int k0, final int k1) {
+        for (int i=k0+1; i<k1; ++i) {
+            final int row = i*n;
+            for (int k=k0; k<i; ++k) {
+                final double l = lu[row+k];
+                if (l == 0.0) {
+                    continue;
+                }
+                DenseKernels.axpy(-l, lu, k*n+k1, lu, row+k1, n-k1);
+            }
+        }
+    }
+
+    /**
+     * {@code A[from..to-1][k1..n-1] -= A[from..to-1][k0..k1-1] *
+     * A[k0..k1-1][k1..n-1]}, split into stripes of at most {@code grain}
+     * rows. Every stripe only writes its own rows.
+     */
+    private class TrailingUpdate extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int k0;
+        private final int k1;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        TrailingUpdate(final int k0, final int k1,
+                       final int from, final int to, final int grain) {
+            this.k0 = k0;
+            this.k1 = k1;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(
+                        new TrailingUpdate(k0, k1, from, mid, grain),
+                        new TrailingUpdate(k0, k1, mid, to, grain));
+                return;
+            }
+            final int blockCols = NativeMatrix.DEFAULT_BLOCK_COLS;
+            for (int j0=k1; j0<n; j0+=blockCols) {
+                final int jMax = Math.min(j0+blockCols, n);
+                for (int i=from; i<to; ++i) {
+                    final int row = i*n;
+                    for (int k=k0; k<k1; ++k) {
+                        final double l = lu[row+k];
+                        if (l == 0.0) {
+                            continue;
+                        }
+                        DenseKernels.axpy(-l, lu, k*n+j0, lu, row+j0, jMax-j0);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Chooses the entry of column {@code k} with the largest magnitude on or
+     * below the diagonal as pivot and swaps its whole row into row
+     * {@code k}.
+     */
+    void pivot(final int k) {
+        int p = k;
+        double max = Math.abs(lu[k*n+k]);
+        for (int i=k+1; i<n; ++i) {
+            final double v = Math.abs(lu[i*n+k]);
+            if (v > max) {
+                max = v;
+                p = i;
+            }
+        }
+        if (max == 0.0) {
+            throw new ArithmeticException("matrix is singular");
+        }
+        if (p != k) {
+            final int rowP = p*n;
+            final int rowK = k*n;
+            for (int j=0; j<n; ++j) {
+                final double tmp = lu[rowP+j];
+                lu[rowP+j] = lu[rowK+j];
+                lu[rowK+j] = tmp;
+            }
+            final int tmp = perm[p];
+            perm[p] = perm[k];
+            perm[k] = tmp;
+        }
+    }
+
+    /**
+     * Computes the multipliers of column {@code k} and updates the columns
+     * {@code k+1 .. colEnd-1} of all rows below the pivot row.
+     */
+    void eliminate(final int k, final int colEnd) {
+        final int rowK = k*n;
+        final double pivot = lu[rowK+k];
+        for (int i=k+1; i<n; ++i) {
+            final int row = i*n;
+            final double l = lu[row+k] / pivot;
+            lu[row+k] = l;
+            if (l == 0.0) {
+                continue;
+            }
+            DenseKernels.axpy(-l, lu, rowK+k+1, lu, row+k+1, colEnd-k-1);
+        }
+    }
+
+    public int size() { return this.n; }
+
+    /**
+     * The row permutation: row {@code i} of {@code L*U} is row
+     * {@code pivot()[i]} of the factored matrix. The returned array is
+     * shared, not copied.
+     */
+    public int[] pivot() { return this.perm; }
+
+    public NativeMatrix getL() {
+        final NativeMatrix ret = NativeMatrix.identity(n);
+        for (int i=0; i<n; ++i) {
+            for (int j=0; j<i; ++j) {
+                ret.put(i, j, lu[i*n+j]);
+            }
+        }
+        return ret;
+    }
+
+    public NativeMatrix getU() {
+        final NativeMatrix ret = new NativeMatrix(n, n);
+        for (int i=0; i<n; ++i) {
+            for (int j=i; j<n; ++j) {
+                ret.put(i, j, lu[i*n+j]);
+            }
+        }
+        return ret;
+    }
+
+    public double[] solve(final double[] b) {
+        return solve(b, new double[n]);
+    }
+
+    /**
+     * Solves {@code A*x = b} for {@code x}, writing the solution into the
+     * caller supplied buffer {@code x}, which must not be {@code b}.
+     */
+    public double[] solve(final double[] b, final double[] x) {
+        if (b.length != n || x.length != n) {
+            throw new IllegalArgumentException("vectors must have length "+n);
+        }
+        if (b == x) {
+            throw new IllegalArgumentException("b and x must be different buffers");
+        }
+        for (int i=0; i<n; ++i) {
+            final int row = i*n;
+            x[i] = b[perm[i]] - DenseKernels.dot(lu, row, x, 0, i);
+        }
+        for (int i=n-1; i>=0; --i) {
+            final int row = i*n;
+            x[i] = (x[i] - DenseKernels.dot(lu, row+i+1, x, i+1, n-i-1)) / lu[row+i];
+        }
+        return x;
+    }
+
+    public NativeMatrix solve(final NativeMatrix B) {
+        return solve(B, new NativeMatrix(n, B.getCols()));
+    }
+
+    /**
+     * Solves {@code A*X = B} for all columns of {@code B} at once, writing
+     * the solution into {@code X}, which must not be {@code B}. The
+     * substitutions work on whole rows of {@code X}, so the inner loops run
+     * over contiguous memory.
+     */
+    public NativeMatrix solve(final NativeMatrix B, final NativeMatrix X) {
+        if (B.getRows() != n || X.getRows() != n || X.getCols() != B.getCols()) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        if (B == X) {
+            throw new IllegalArgumentException("B and X must be different matrices");
+        }
+        final int m = B.getCols();
+        final double[] b = B.data();
+        final double[] x = X.data();
+        for (int i=0; i<n; ++i) {
+            System.arraycopy(b, perm[i]*m, x, i*m, m);
+        }
+        for (int i=0; i<n; ++i) {
+            final int xi = i*m;
+            for (int k=0; k<i; ++k) {
+                final double l = lu[i*n+k];
+                if (l == 0.0) {
+                    continue;
+                }
+                DenseKernels.axpy(-l, x, k*m, x, xi, m);
+            }
+        }
+        for (int i=n-1; i>=0; --i) {
+            final int xi = i*m;
+            for (int k=i+1; k<n; ++k) {
+                final double u = lu[i*n+k];
+                if (u == 0.0) {
+                    continue;
+                }
+                DenseKernels.axpy(-u, x, k*m, x, xi, m);
+            }
+            DenseKernels.scale(1.0 / lu[i*n+i], x, xi, x, xi, m);
+        }
+        return X;
+    }
+}
@@ -0,0 +1,736 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.HashMapStorage;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@link NestedStorage} of doubles that lives in a memory-mapped file
+ * instead of on the Java heap, so a {@link Matrix} backed by it, as in
+ * {@code new Matrix(rows, cols, OffHeapStorage.create(cols))}, is bounded
+ * by disk and address space rather than by the heap.
+ *
+ * Rows are stored densely and row-major, {@link #width()} doubles each.
+ * The file is mapped in pages of whole rows, at most {@code pageBytes}
+ * each, which keeps every mapping below the 2GB limit of a single
+ * {@link java.nio.MappedByteBuffer} and lets the OS page row blocks in and
+ * out as they are used. A page is mapped when one of its rows is first
+ * written to; reads never map pages, so concurrent readers don't modify
+ * the storage. The file is only open while a page is mapped.
+ *
+ * A zero cell is a null cell: a row's non-null cells are its non-zero
+ * ones, and a row is non-null if it holds a non-zero cell. Writing a
+ * non-zero cell beyond the width lays the file out again with at least
+ * twice the width. The storages returned by {@link #emptyCopy()} and
+ * {@link #copy()} live in new temporary files next to this storage's file;
+ * copies of single rows live on the heap. The results of {@link Matrix}
+ * operations on an off-heap matrix are therefore off-heap as well.
+ *
+ * A storage in a temporary file deletes it when it is {@link #close()}d,
+ * so intermediate results should be closed as soon as they are no longer
+ * needed, as in {@code ((OffHeapStorage) m.storage).close()}. Temporary
+ * files of storages that are garbage collected without having been closed
+ * are deleted when the next temporary storage is created, and the rest
+ * when the JVM exits.
+ */
+public class OffHeapStorage implements NestedStorage<Double>, Closeable {
+    public static final int DEFAULT_PAGE_BYTES = 64 * 1024 * 1024;
+
+    private static final ReferenceQueue<OffHeapStorage> COLLECTED = new ReferenceQueue<>();
+    /** The temporary files that are not deleted yet. */
+    private static final Set<TempFile> TEMP_FILES = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (final TempFile f : TEMP_FILES) {
+                f.delete();
+            }
+        }));
+    }
+
+    /**
+     * The temporary file of a storage, enqueued in {@link #COLLECTED} once
+     * the storage is unreachable.
+     */
+    private static final class TempFile extends PhantomReference<OffHeapStorage> {
+        private final Path file;
+
+        TempFile(final OffHeapStorage owner, final Path file) {
+            super(owner, COLLECTED);
+            this.file = file;
+            TEMP_FILES.add(this);
+        }
+
+        void delete() {
+            TEMP_FILES.remove(this);
+            clear();
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // e.g. still mapped on Windows
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private static void deleteCollected() {
+        Reference<? extends OffHeapStorage> ref;
+        while ((ref = COLLECTED.poll()) != null) {
+            ((TempFile) ref).delete();
+        }
+    }
+
+    private final Path file;
+    /** The file if this storage owns it, {@code null} otherwise. */
+    private final TempFile temp;
+    private final int pageBytes;
+    private int width;
+    private int rowsPerPage;
+    private DoubleBuffer[] pages = new DoubleBuffer[0];
+    private boolean closed = false;
+
+    private OffHeapStorage(final Path file,
+                           final int width,
+                           final int pageBytes,
+                           final boolean temporary) throws IOException {
+        if (width <= 0) {
+            throw new IllegalArgumentException("illegal row width "+width);
+        }
+        if (pageBytes <= 0) {
+            throw new IllegalArgumentException("page size must be positive");
+        }
+        this.file = file;
+        this.pageBytes = pageBytes;
+        layout(width);
+        final long rowBytes = 8L * width;
+        final long size = Files.size(file);
+        if (size % rowBytes != 0) {
+            throw new IllegalArgumentException("file of "+size
+                    +" bytes doesn't hold whole rows of "+width+" doubles");
+        }
+        for (long row=0; row<size/rowBytes; row+=rowsPerPage) {
+            ensureRow((int) row);
+        }
+        this.temp = temporary ? new TempFile(this, file) : null;
+    }
+
+    /**
+     * Opens a storage with rows of {@code width} doubles in {@code file}.
+     * If {@code keep} is set, the rows already stored in the file are kept,
+     * so a matrix can be reopened; otherwise the file is emptied.
+     */
+    public static OffHeapStorage create(final Path file,
+                                        final int width,
+                                        final int pageBytes,
+                                        final boolean keep) throws IOException {
+        truncate(file, keep);
+        return new OffHeapStorage(file, width, pageBytes, false);
+    }
+
+    private static void truncate(final Path file, final boolean keep) throws IOException {
+        try (FileChannel ch = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE)) {
+            if (!keep) {
+                ch.truncate(0);
+            }
+        }
+    }
+
+    public static OffHeapStorage create(final Path file, final int width) throws IOException {
+        return create(file, width, DEFAULT_PAGE_BYTES, false);
+    }
+
+    /**
+     * Creates an empty storage in a temporary file, which is deleted when
+     * the storage is closed.
+     */
+    public static OffHeapStorage create(final int width) throws IOException {
+        return createTemp(null, width, DEFAULT_PAGE_BYTES);
+    }
+
+    /**
+     * Creates an empty storage in a temporary file in {@code dir}, or in
+     * the default temporary directory if {@code dir} is {@code null}.
+     */
+    private static OffHeapStorage createTemp(final Path dir,
+                                             final int width,
+                                             final int pageBytes) throws IOException {
+        deleteCollected();
+        final Path file = dir == null
+                ? Files.createTempFile("cflat-matrix", ".bin")
+                : Files.createTempFile(dir, "cflat-matrix", ".bin");
+        try {
+            return new OffHeapStorage(file, width, pageBytes, true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * The number of doubles stored per row.
+     */
+    public int width() { return this.width; }
+
+    private void layout(final int width) {
+        final int rowsPerPage = Math.max(1, pageBytes / 8 / width);
+        if (8L * width * rowsPerPage > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a row of "+width
+                    +" doubles exceeds the 2GB mapping limit");
+        }
+        this.width = width;
+        this.rowsPerPage = rowsPerPage;
+        this.pages = new DoubleBuffer[0];
+    }
+
+    private DoubleBuffer pageOf(final int row) {
+        final int p = row / rowsPerPage;
+        return p < pages.length ? pages[p] : null;
+    }
+
+    private int offset(final int row) {
+        return (row % rowsPerPage) * width;
+    }
+
+    /**
+     * Maps the page holding {@code row}, growing the file if needed.
+     */
+    private DoubleBuffer ensureRow(final int row) {
+        if (closed) {
+            throw new IllegalStateException("storage is closed");
+        }
+        final int p = row / rowsPerPage;
+        if (p >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(p + 1, 2 * pages.length));
+        }
+        if (pages[p] == null) {
+            final long pageSize = 8L * width * rowsPerPage;
+            final long start = p * pageSize;
+            try (FileChannel ch = FileChannel.open(file,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                if (ch.size() < start + pageSize) {
+                    // extend the file; the OS fills the gap with zeros
+                    ch.write(ByteBuffer.allocate(1), start + pageSize - 1);
+                }
+                pages[p] = ch
+                        .map(FileChannel.MapMode.READ_WRITE, start, pageSize)
+                        .order(ByteOrder.nativeOrder())
+                        .asDoubleBuffer();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return pages[p];
+    }
+
+    /**
+     * Lays the mapped rows out again with rows of at least
+     * {@code minWidth} doubles. Rows move to higher offsets only, so
+     * copying them from the last to the first never overwrites a row that
+     * still has to be read.
+     */
+    private void widen(final int minWidth) {
+        final DoubleBuffer[] oldPages = pages;
+        final int oldWidth = width;
+        final int oldRowsPerPage = rowsPerPage;
+        int lastPage = oldPages.length - 1;
+        while (lastPage >= 0 && oldPages[lastPage] == null) {
+            --lastPage;
+        }
+        layout((int) Math.min(Integer.MAX_VALUE - 8, Math.max(minWidth, 2L * oldWidth)));
+        final double[] buf = new double[width];
+        for (int row=(lastPage + 1) * oldRowsPerPage - 1; row>=0; --row) {
+            final DoubleBuffer src = oldPages[row / oldRowsPerPage];
+            final DoubleBuffer dst = ensureRow(row);
+            Arrays.fill(buf, 0.0);
+            if (src != null) {
+                final int off = (row % oldRowsPerPage) * oldWidth;
+                for (int j=0; j<oldWidth; ++j) {
+                    buf[j] = src.get(off + j);
+                }
+            }
+            final int off = offset(row);
+            for (int j=0; j<width; ++j) {
+                dst.put(off + j, buf[j]);
+            }
+        }
+    }
+
+    private double read(final int row, final int col) {
+        final DoubleBuffer p = pageOf(row);
+        return p == null || col >= width ? 0.0 : p.get(offset(row) + col);
+    }
+
+    private void write(final int row, final int col, final double val) {
+        if (val == 0.0 && (col >= width || pageOf(row) == null)) {
+            return;
+        }
+        if (col >= width) {
+            widen(col + 1);
+        }
+        ensureRow(row).put(offset(row) + col, val);
+    }
+
+    private boolean rowHasValue(final int row) {
+        final DoubleBuffer p = pageOf(row);
+        if (p != null) {
+            final int off = offset(row);
+            for (int j=0; j<width; ++j) {
+                if (p.get(off + j) != 0.0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void readRow(final int row, final double[] buf) {
+        final DoubleBuffer p = pageOf(row);
+        if (p == null) {
+            Arrays.fill(buf, 0.0);
+            return;
+        }
+        final int off = offset(row);
+        for (int j=0; j<width; ++j) {
+            buf[j] = p.get(off + j);
+        }
+    }
+
+    private void writeRow(final int row, final double[] buf) {
+        if (pageOf(row) == null && isZero(buf)) {
+            return;
+        }
+        final DoubleBuffer p = ensureRow(row);
+        final int off = offset(row);
+        for (int j=0; j<width; ++j) {
+            p.put(off + j, buf[j]);
+        }
+    }
+
+    private static boolean isZero(final double[] buf) {
+        for (final double v : buf) {
+            if (v != 0.0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void clearRow(final int row) {
+        final DoubleBuffer p = pageOf(row);
+        if (p != null) {
+            final int off = offset(row);
+            for (int j=0; j<width; ++j) {
+                p.put(off + j, 0.0);
+            }
+        }
+    }
+
+    /**
+     * Whether {@code a} and {@code b} hold the same non-null cells.
+     */
+    private static boolean sameCells(final Storage<Double> a, final Storage<Double> b) {
+        final boolean[] same = { true };
+        a.foreachNonNull(i -> same[0] &= a.get(i).equals(b.get(i)));
+        b.foreachNonNull(i -> same[0] &= b.get(i).equals(a.get(i)));
+        return same[0];
+    }
+
+    /**
+     * A view of one row. Views are created on every {@link #get(int)}; all
+     * of them write through to the file.
+     */
+    private class Row implements Storage<Double> {
+        private final int row;
+
+        Row(final int row) {
+            this.row = row;
+        }
+
+        private OffHeapStorage owner() {
+            return OffHeapStorage.this;
+        }
+
+        @Override
+        public Double get(final int col) {
+            final double v = read(row, col);
+            return v == 0.0 ? null : v;
+        }
+
+        @Override
+        public Storage<Double> set(final int col, final Double x) {
+            write(row, col, x == null ? 0.0 : x);
+            return this;
+        }
+
+        @Override
+        public boolean has(final int col) {
+            return read(row, col) != 0.0;
+        }
+
+        @Override
+        public int maxIdx() {
+            for (int j=width-1; j>=0; --j) {
+                if (read(row, j) != 0.0) {
+                    return j + 1;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public int maxIdxOverapproximation() {
+            return width;
+        }
+
+        @Override
+        public void foreachNonNull(final IntConsumer f) {
+            final int w = width;
+            for (int j=0; j<w; ++j) {
+                if (read(row, j) != 0.0) {
+                    f.accept(j);
+                }
+            }
+        }
+
+        @Override
+        public <U> void joinInner(final Storage<U> other, final BiConsumer<Double, U> f) {
+            foreachNonNull(j -> {
+                final U u = other.get(j);
+                if (u != null) {
+                    f.accept(read(row, j), u);
+                }
+            });
+        }
+
+        @Override
+        public Storage<Double> moveRange(final int source, final int dest, final int length) {
+            final double[] tmp = new double[length];
+            for (int i=0; i<length; ++i) {
+                tmp[i] = read(row, source + i);
+                write(row, source + i, 0.0);
+            }
+            for (int i=0; i<length; ++i) {
+                write(row, dest + i, tmp[i]);
+            }
+            return this;
+        }
+
+        @Override
+        public int findFirst(final Double x, final int upto) {
+            final int end = upto >= 0 ? Math.min(upto, width) : width;
+            for (int j=0; j<end; ++j) {
+                final double v = read(row, j);
+                if (x == null ? v == 0.0 : v != 0.0 && x.equals(v)) {
+                    return j;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Storage<Double> emptyCopy() {
+            return new HashMapStorage<>();
+        }
+
+        @Override
+        public Storage<Double> copy() {
+            Storage<Double> ret = new HashMapStorage<>();
+            final int w = width;
+            for (int j=0; j<w; ++j) {
+                final double v = read(row, j);
+                if (v != 0.0) {
+                    ret = ret.set(j, v);
+                }
+            }
+            return ret;
+        }
+
+        @Override
+        public Storage<Double> setRange(final int start, final Double x, final int length) {
+            for (int i=0; i<length; ++i) {
+                set(start + i, x);
+            }
+            return this;
+        }
+
+        @Override
+        public Iterator<Integer> nonNullIndices() {
+            final List<Integer> ret = new ArrayList<>();
+            foreachNonNull(ret::add);
+            return ret.iterator();
+        }
+
+        @Override
+        public void clearAll() {
+            clearRow(row);
+        }
+
+        @Override
+        public long bytesUsed() {
+            return 8L * width;
+        }
+    }
+
+    @Override
+    public Storage<Double> get(final int row) {
+        return new Row(row);
+    }
+
+    /**
+     * Replaces row {@code row} with the non-null cells of {@code x}, or
+     * clears it if {@code x} is {@code null}.
+     */
+    @Override
+    public Storage<Storage<Double>> set(final int row, final Storage<Double> x) {
+        if (x instanceof Row && ((Row) x).owner() == this && ((Row) x).row == row) {
+            return this;
+        }
+        if (x instanceof Row && ((Row) x).owner() == this) {
+            final double[] buf = new double[width];
+            readRow(((Row) x).row, buf);
+            writeRow(row, buf);
+            return this;
+        }
+        clearRow(row);
+        if (x != null) {
+            x.foreachNonNull(col -> write(row, col, x.get(col)));
+        }
+        return this;
+    }
+
+    @Override
+    public boolean has(final int row) {
+        return rowHasValue(row);
+    }
+
+    @Override
+    public int maxIdx() {
+        for (int row=maxIdxOverapproximation()-1; row>=0; --row) {
+            if (rowHasValue(row)) {
+                return row + 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int maxIdxOverapproximation() {
+        return pages.length * rowsPerPage;
+    }
+
+    @Override
+    public void foreachNonNull(final IntConsumer f) {
+        final int end = maxIdxOverapproximation();
+        for (int row=0; row<end; ++row) {
+            if (rowHasValue(row)) {
+                f.accept(row);
+            }
+        }
+    }
+
+    @Override
+    public <U> void joinInner(final Storage<U> other,
+                              final BiConsumer<Storage<Double>, U> f) {
+        foreachNonNull(row -> {
+            final U u = other.get(row);
+            if (u != null) {
+                f.accept(get(row), u);
+            }
+        });
+    }
+
+    @Override
+    public Storage<Storage<Double>> moveRange(final int source, final int dest, final int length) {
+        final double[] buf = new double[width];
+        if (dest < source) {
+            for (int i=0; i<length; ++i) {
+                readRow(source + i, buf);
+                writeRow(dest + i, buf);
+            }
+        } else if (dest > source) {
+            for (int i=length-1; i>=0; --i) {
+                readRow(source + i, buf);
+                writeRow(dest + i, buf);
+            }
+        }
+        for (int i=0; i<length; ++i) {
+            final int row = source + i;
+            if (row < dest || row >= dest + length) {
+                clearRow(row);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public int findFirst(final Storage<Double> x, final int upto) {
+        final int end = upto >= 0
+                ? Math.min(upto, maxIdxOverapproximation())
+                : maxIdxOverapproximation();
+        for (int row=0; row<end; ++row) {
+            if (x == null ? !rowHasValue(row) : sameCells(get(row), x)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * An empty storage with the same width and page size, in a new
+     * temporary file in the directory of this storage's file.
+     */
+    @Override
+    public Storage<Storage<Double>> emptyCopy() {
+        try {
+            return createTemp(file.toAbsolutePath().getParent(), width, pageBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Storage<Storage<Double>> copy() {
+        return copyNested();
+    }
+
+    /**
+     * A copy in a new temporary file.
+     */
+    @Override
+    public NestedStorage<Double> copyNested() {
+        final OffHeapStorage ret = (OffHeapStorage) emptyCopy();
+        final double[] buf = new double[width];
+        final int end = maxIdxOverapproximation();
+        for (int row=0; row<end; ++row) {
+            if (pageOf(row) != null) {
+                readRow(row, buf);
+                ret.writeRow(row, buf);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public Storage<Storage<Double>> setRange(final int start,
+                                             final Storage<Double> x,
+                                             final int length) {
+        for (int i=0; i<length; ++i) {
+            set(start + i, x);
+        }
+        return this;
+    }
+
+    @Override
+    public Iterator<Integer> nonNullIndices() {
+        final List<Integer> ret = new ArrayList<>();
+        foreachNonNull(ret::add);
+        return ret.iterator();
+    }
+
+    /**
+     * Zeroes all mapped rows. The file keeps its size.
+     */
+    @Override
+    public void clearAll() {
+        final int end = maxIdxOverapproximation();
+        for (int row=0; row<end; ++row) {
+            clearRow(row);
+        }
+    }
+
+    /**
+     * The size of the mapped pages. None of it is on the Java heap.
+     */
+    @Override
+    public long bytesUsed() {
+        long ret = 0;
+        for (final DoubleBuffer p : pages) {
+            if (p != null) {
+                ret += 8L * p.capacity();
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Column {@code col} as a heap storage, indexed by row.
+     */
+    @Override
+    public Storage<Double> getCol(final int col) {
+        Storage<Double> ret = new HashMapStorage<>();
+        final int end = maxIdxOverapproximation();
+        for (int row=0; row<end; ++row) {
+            final double v = read(row, col);
+            if (v != 0.0) {
+                ret = ret.set(row, v);
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public void foreachColNonNull(final IntConsumer f) {
+        final BitSet cols = new BitSet(width);
+        final int end = maxIdxOverapproximation();
+        for (int row=0; row<end; ++row) {
+            final DoubleBuffer p = pageOf(row);
+            if (p == null) {
+                continue;
+            }
+            final int off = offset(row);
+            for (int j=0; j<width; ++j) {
+                if (p.get(off + j) != 0.0) {
+                    cols.set(j);
+                }
+            }
+        }
+        for (int j=cols.nextSetBit(0); j>=0; j=cols.nextSetBit(j+1)) {
+            f.accept(j);
+        }
+    }
+
+    /**
+     * Drops the mappings and deletes the file if it is a temporary one.
+     * Afterwards, the storage reads as empty and can't be written to. The
+     * memory of the mappings is released once they are garbage collected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pages = new DoubleBuffer[0];
+        if (temp != null) {
+            temp.delete();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapStorage(width "+width+", "+maxIdxOverapproximation()+" rows mapped)";
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.kaeluka.cflat;
+
+/**
+ * An approximation {@code M} of a matrix {@code A} that is cheap to invert,
+ * used by {@link IterativeSolver} to speed up convergence.
+ */
+@FunctionalInterface
+public interface Preconditioner {
+    /**
+     * Computes {@code z = M^-1 * r}. {@code z} is never {@code r}.
+     */
+    void apply(double[] r, double[] z);
+
+    /**
+     * The identity: no preconditioning.
+     */
+    Preconditioner NONE = (r, z) -> System.arraycopy(r, 0, z, 0, r.length);
+}
@@ -7,7 +7,11 @@ import com.github.kaeluka.cflat.storage.Storage;
 import javax.annotation.Nonnull;
 import java.lang.reflect.Array;
 import java.util.AbstractList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 @SuppressWarnings("unchecked")
 @Cflat("*(next)->ok")
@@ -91,6 +95,46 @@ public class Sequence<T> extends AbstractList<T> implements Iterable<T>, Cloneab
         storage = storage.set(index, element);
     }
 
+    @Override
+    public boolean addAll(final Collection<? extends T> xs) {
+        return addAll(size(), xs);
+    }
+
+    @Override
+    public boolean addAll(final int index, final Collection<? extends T> xs) {
+        return addAll(index, (T[]) xs.toArray());
+    }
+
+    public boolean addAll(final T[] xs) {
+        return addAll(size(), xs);
+    }
+
+    /**
+     * Inserts {@code xs} at {@code index}. The suffix from {@code index} on
+     * is moved once, by {@code xs.length}, before the elements are written,
+     * so inserting {@code k} elements costs {@code O(k + size() - index)}
+     * instead of {@code k} separate moves.
+     */
+    public boolean addAll(final int index, final T[] xs) {
+        final int size = size();
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("list index "+index
+                    +" out of bounds for list of length "+size);
+        }
+        final int k = xs.length;
+        if (k == 0) {
+            return false;
+        }
+        tail.next_nth(k);
+        if (index < size) {
+            storage = storage.moveRange(index, index+k, size - index);
+        }
+        for (int i=0; i<k; ++i) {
+            storage = storage.set(index+i, xs[i]);
+        }
+        return true;
+    }
+
     @Override
     public T remove(final int index) {
         T ret = get(index);
@@ -143,26 +187,96 @@ public class Sequence<T> extends AbstractList<T> implements Iterable<T>, Cloneab
         return ret;
     }
 
+    /**
+     * Calls {@code action} on every element in order, reading the storage
+     * directly instead of going through an iterator.
+     */
+    @Override
+    public void forEach(final Consumer<? super T> action) {
+        final int size = size();
+        for (int i=0; i<size; ++i) {
+            action.accept(storage.get(i));
+        }
+    }
+
+    /**
+     * A spliterator over the current index range. It splits that range in
+     * halves, so parallel streams divide the work evenly; the storage is
+     * only read, never copied.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new RangeSpliterator(0, size());
+    }
+
     private class Iter implements Iterator<T> {
         private final SequenceIdx cur = new SequenceIdx();
 
-        private T get() {
-            return storage.get(cur.ok());
-        }
-
         @Override
         public boolean hasNext() {
-            return get() != null;
+            return cur.ok() < tail.ok();
         }
 
         @Override
         public T next() {
-            final T ret = get();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final T ret = storage.get(cur.ok());
             cur.next();
             return ret;
         }
     }
 
+    private class RangeSpliterator implements Spliterator<T> {
+        private int index;
+        private final int fence;
+
+        RangeSpliterator(final int index, final int fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            if (index < fence) {
+                action.accept(storage.get(index++));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super T> action) {
+            final Storage<T> st = storage;
+            for (int i=index; i<fence; ++i) {
+                action.accept(st.get(i));
+            }
+            index = fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            final int mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            final Spliterator<T> prefix = new RangeSpliterator(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED;
+        }
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName()+"("+storage.getClass()+")"+super.toString();
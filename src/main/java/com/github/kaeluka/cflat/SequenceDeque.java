@@ -0,0 +1,370 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.Storage;
+
+import javax.annotation.Nonnull;
+import java.util.AbstractCollection;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Deque} over a {@link Storage}, used as a ring buffer.
+ *
+ * The elements occupy the storage indices {@code head, head+1, ...} modulo
+ * a power of two capacity, so adding and removing at either end is
+ * constant time and never moves elements, unlike {@link Sequence#remove}
+ * at the front. When the buffer is full, the capacity doubles and the
+ * wrapped-around part is moved behind the rest, which keeps the elements
+ * in at most two contiguous runs of storage indices.
+ *
+ * Like {@link java.util.ArrayDeque}, it does not permit {@code null}
+ * elements.
+ */
+public class SequenceDeque<T> extends AbstractCollection<T> implements Deque<T> {
+    private static final int MIN_CAPACITY = 16;
+
+    private Storage<T> storage;
+    private int mask;
+    private int head = 0;
+    private int size = 0;
+    private int modCount = 0;
+
+    /**
+     * @param storage an empty storage
+     */
+    public SequenceDeque(final Storage<T> storage) {
+        this(storage, MIN_CAPACITY);
+    }
+
+    /**
+     * @param storage  an empty storage
+     * @param capacity the number of elements the deque can hold before it
+     *                 grows for the first time; rounded up to a power of two
+     */
+    public SequenceDeque(final Storage<T> storage, final int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("illegal capacity "+capacity);
+        }
+        this.storage = storage;
+        this.mask = capacity == 1 ? 0 : Integer.highestOneBit(capacity - 1) * 2 - 1;
+    }
+
+    private int physical(final int index) {
+        return (head + index) & mask;
+    }
+
+    private void grow() {
+        final int capacity = mask + 1;
+        if (capacity == 1 << 30) {
+            throw new IllegalStateException("deque too large");
+        }
+        // elements run from head to the end, then wrap around from 0
+        final int wrapped = head + size - capacity;
+        if (wrapped > 0) {
+            storage = storage.moveRange(0, capacity, wrapped);
+            storage = storage.setRange(0, null, wrapped);
+        }
+        mask = 2 * capacity - 1;
+    }
+
+    /**
+     * The element at position {@code index}, counted from the first.
+     */
+    public T get(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("deque index "+index
+                    +" out of bounds for deque of length "+size);
+        }
+        return storage.get(physical(index));
+    }
+
+    @Override
+    public void addFirst(final T x) {
+        Objects.requireNonNull(x);
+        if (size == mask + 1) {
+            grow();
+        }
+        head = (head - 1) & mask;
+        storage = storage.set(head, x);
+        ++size;
+        ++modCount;
+    }
+
+    @Override
+    public void addLast(final T x) {
+        Objects.requireNonNull(x);
+        if (size == mask + 1) {
+            grow();
+        }
+        storage = storage.set(physical(size), x);
+        ++size;
+        ++modCount;
+    }
+
+    @Override
+    public boolean offerFirst(final T x) {
+        addFirst(x);
+        return true;
+    }
+
+    @Override
+    public boolean offerLast(final T x) {
+        addLast(x);
+        return true;
+    }
+
+    @Override
+    public T pollFirst() {
+        if (size == 0) {
+            return null;
+        }
+        final T ret = storage.get(head);
+        storage = storage.set(head, null);
+        head = (head + 1) & mask;
+        --size;
+        ++modCount;
+        return ret;
+    }
+
+    @Override
+    public T pollLast() {
+        if (size == 0) {
+            return null;
+        }
+        final int last = physical(size - 1);
+        final T ret = storage.get(last);
+        storage = storage.set(last, null);
+        --size;
+        ++modCount;
+        return ret;
+    }
+
+    @Override
+    public T removeFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return pollFirst();
+    }
+
+    @Override
+    public T removeLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return pollLast();
+    }
+
+    @Override
+    public T peekFirst() {
+        return size == 0 ? null : storage.get(head);
+    }
+
+    @Override
+    public T peekLast() {
+        return size == 0 ? null : storage.get(physical(size - 1));
+    }
+
+    @Override
+    public T getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return peekFirst();
+    }
+
+    @Override
+    public T getLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return peekLast();
+    }
+
+    /**
+     * Removes the element at position {@code index} by shifting the shorter
+     * of the two sides towards it.
+     */
+    private void delete(final int index) {
+        if (index < size / 2) {
+            for (int i=index; i>0; --i) {
+                storage = storage.set(physical(i), storage.get(physical(i - 1)));
+            }
+            pollFirst();
+        } else {
+            for (int i=index; i<size-1; ++i) {
+                storage = storage.set(physical(i), storage.get(physical(i + 1)));
+            }
+            pollLast();
+        }
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(final Object o) {
+        if (o != null) {
+            for (int i=0; i<size; ++i) {
+                if (o.equals(storage.get(physical(i)))) {
+                    delete(i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean removeLastOccurrence(final Object o) {
+        if (o != null) {
+            for (int i=size-1; i>=0; --i) {
+                if (o.equals(storage.get(physical(i)))) {
+                    delete(i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean add(final T x) {
+        addLast(x);
+        return true;
+    }
+
+    @Override
+    public boolean offer(final T x) {
+        return offerLast(x);
+    }
+
+    @Override
+    public T remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public T poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public T element() {
+        return getFirst();
+    }
+
+    @Override
+    public T peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public void push(final T x) {
+        addFirst(x);
+    }
+
+    @Override
+    public T pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public boolean remove(final Object o) {
+        return removeFirstOccurrence(o);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        storage = storage.emptyCopy();
+        head = size = 0;
+        ++modCount;
+    }
+
+    /**
+     * Calls {@code action} on every element from first to last, reading the
+     * (at most two) contiguous runs of storage indices directly.
+     */
+    @Override
+    public void forEach(final Consumer<? super T> action) {
+        final int capacity = mask + 1;
+        final int end = Math.min(head + size, capacity);
+        for (int i=head; i<end; ++i) {
+            action.accept(storage.get(i));
+        }
+        final int wrapped = head + size - capacity;
+        for (int i=0; i<wrapped; ++i) {
+            action.accept(storage.get(i));
+        }
+    }
+
+    @Override @Nonnull
+    public Iterator<T> iterator() {
+        return new Iter(false);
+    }
+
+    @Override @Nonnull
+    public Iterator<T> descendingIterator() {
+        return new Iter(true);
+    }
+
+    private class Iter implements Iterator<T> {
+        private final boolean descending;
+        /** The number of elements left to visit. */
+        private int remaining = size;
+        /** The position of the element last returned, or -1. */
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        Iter(final boolean descending) {
+            this.descending = descending;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public T next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            last = descending ? remaining - 1 : size - remaining;
+            --remaining;
+            return storage.get(physical(last));
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            delete(last);
+            last = -1;
+            expectedModCount = modCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()+"("+storage.getClass()+")"+super.toString();
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+
+/**
+ * A square symmetric matrix that stores only its lower triangle, packed as
+ * in a lower {@link TriangularMatrix}: about half the memory of the full
+ * matrix. Cell {@code (i, j)} and cell {@code (j, i)} are the same cell.
+ */
+public class SymmetricMatrix {
+    private final TriangularMatrix lower;
+
+    public SymmetricMatrix(final int n) {
+        this.lower = TriangularMatrix.lower(n);
+    }
+
+    public int getRows() { return lower.getRows(); }
+
+    public int getCols() { return lower.getCols(); }
+
+    public double get(final int i, final int j) {
+        return i >= j ? lower.get(i, j) : lower.get(j, i);
+    }
+
+    /**
+     * Sets cells {@code (i, j)} and {@code (j, i)} to {@code val}.
+     */
+    public SymmetricMatrix put(final int i, final int j, final double val) {
+        if (i >= j) {
+            lower.put(i, j, val);
+        } else {
+            lower.put(j, i, val);
+        }
+        return this;
+    }
+
+    public SymmetricMatrix multiply(final double x) {
+        final SymmetricMatrix ret = new SymmetricMatrix(getRows());
+        final double[] src = lower.data();
+        DenseKernels.scale(x, src, 0, ret.lower.data(), 0, src.length);
+        return ret;
+    }
+
+    /**
+     * Computes {@code y = this * x}. Every stored row is read once and used
+     * twice: as a row of the lower triangle (a dot product) and as a column
+     * of the upper triangle (an axpy).
+     */
+    public double[] multiply(final double[] x, final double[] y) {
+        final int n = getRows();
+        if (x.length != n || y.length != n) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        final double[] data = lower.data();
+        for (int i=0; i<n; ++i) {
+            final int start = lower.rowStart(i);
+            y[i] = DenseKernels.dot(data, start, x, 0, i+1);
+        }
+        for (int i=1; i<n; ++i) {
+            DenseKernels.axpy(x[i], data, lower.rowStart(i), y, 0, i);
+        }
+        return y;
+    }
+
+    public SymmetricMatrix transpose() {
+        return copy();
+    }
+
+    /**
+     * Computes the Cholesky factorization {@code this = L * L^T}, the
+     * symmetric counterpart of an LU factorization at half its cost. Solve
+     * {@code this * x = b} with {@code L.solve(b, y)} followed by
+     * {@code L.solveTransposed(y, x)}.
+     *
+     * @throws ArithmeticException if the matrix is not positive definite
+     */
+    public TriangularMatrix cholesky() {
+        final int n = getRows();
+        final TriangularMatrix ret = TriangularMatrix.lower(n);
+        final double[] a = lower.data();
+        final double[] l = ret.data();
+        for (int i=0; i<n; ++i) {
+            final int rowI = ret.rowStart(i);
+            for (int j=0; j<=i; ++j) {
+                final int rowJ = ret.rowStart(j);
+                final double s = a[rowI+j] - DenseKernels.dot(l, rowI, l, rowJ, j);
+                if (i == j) {
+                    if (s <= 0.0) {
+                        throw new ArithmeticException("matrix is not positive definite");
+                    }
+                    l[rowI+i] = Math.sqrt(s);
+                } else {
+                    l[rowI+j] = s / l[rowJ+j];
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Copies the non-zero cells of both triangles into a matrix backed by
+     * {@code st}.
+     */
+    public Matrix toMatrix(final NestedStorage<Double> st) {
+        final int n = getRows();
+        final Matrix ret = new Matrix(n, n, st);
+        for (int i=0; i<n; ++i) {
+            for (int j=0; j<=i; ++j) {
+                final double v = lower.get(i, j);
+                if (v != 0.0) {
+                    ret.put(i, j, v);
+                    ret.put(j, i, v);
+                }
+            }
+        }
+        return ret;
+    }
+
+    public SymmetricMatrix copy() {
+        final SymmetricMatrix ret = new SymmetricMatrix(getRows());
+        final double[] src = lower.data();
+        System.arraycopy(src, 0, ret.lower.data(), 0, src.length);
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "SymmetricMatrix("+getRows()+" x "+getCols()+")";
+    }
+}
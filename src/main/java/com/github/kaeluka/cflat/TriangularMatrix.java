@@ -0,0 +1,237 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.NestedStorage;
+
+/**
+ * A square lower or upper triangular matrix, packed row by row into
+ * {@code n*(n+1)/2} doubles: row {@code i} of a lower triangular matrix
+ * holds the cells {@code (i, 0) .. (i, i)}, row {@code i} of an upper
+ * triangular one the cells {@code (i, i) .. (i, n-1)}.
+ *
+ * A triangular matrix needs no factorization: {@link #solve} and
+ * {@link #solveTransposed} substitute directly, in {@code O(n^2)}.
+ */
+public class TriangularMatrix {
+    private final int n;
+    private final boolean upper;
+    private final double[] data;
+
+    public TriangularMatrix(final int n, final boolean upper) {
+        final long size = (long) n * (n + 1) / 2;
+        if (n < 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("illegal triangular matrix size "+n);
+        }
+        this.n = n;
+        this.upper = upper;
+        this.data = new double[(int) size];
+    }
+
+    public static TriangularMatrix lower(final int n) {
+        return new TriangularMatrix(n, false);
+    }
+
+    public static TriangularMatrix upper(final int n) {
+        return new TriangularMatrix(n, true);
+    }
+
+    public int getRows() { return this.n; }
+
+    public int getCols() { return this.n; }
+
+    public boolean isUpper() { return this.upper; }
+
+    /**
+     * The packed cells. Shared, not copied.
+     */
+    double[] data() {
+        return this.data;
+    }
+
+    /**
+     * The index of the first stored cell of row {@code i} in
+     * {@link #data()}.
+     */
+    int rowStart(final int i) {
+        return upper
+                ? (int) ((long) i * n - (long) i * (i - 1) / 2)
+                : (int) ((long) i * (i + 1) / 2);
+    }
+
+    /**
+     * The first and one past the last stored column of row {@code i}.
+     */
+    private int firstCol(final int i) {
+        return upper ? i : 0;
+    }
+
+    private int endCol(final int i) {
+        return upper ? n : i + 1;
+    }
+
+    private void checkCell(final int i, final int j) {
+        if (i < 0 || i >= n || j < 0 || j >= n) {
+            throw new IndexOutOfBoundsException("cell ("+i+", "+j
+                    +") is outside of "+n+" x "+n+" matrix");
+        }
+    }
+
+    private boolean inTriangle(final int i, final int j) {
+        return upper ? j >= i : j <= i;
+    }
+
+    int idx(final int i, final int j) {
+        return rowStart(i) + j - firstCol(i);
+    }
+
+    public double get(final int i, final int j) {
+        checkCell(i, j);
+        return inTriangle(i, j) ? data[idx(i, j)] : 0.0;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a non-zero value is put outside
+     *                                  of the triangle
+     */
+    public TriangularMatrix put(final int i, final int j, final double val) {
+        checkCell(i, j);
+        if (inTriangle(i, j)) {
+            data[idx(i, j)] = val;
+        } else if (val != 0.0) {
+            throw new IllegalArgumentException("cell ("+i+", "+j
+                    +") is outside of the "+(upper ? "upper" : "lower")+" triangle");
+        }
+        return this;
+    }
+
+    public TriangularMatrix multiply(final double x) {
+        final TriangularMatrix ret = new TriangularMatrix(n, upper);
+        DenseKernels.scale(x, data, 0, ret.data, 0, data.length);
+        return ret;
+    }
+
+    /**
+     * Computes {@code y = this * x}, one dot product over the stored part
+     * of every row.
+     */
+    public double[] multiply(final double[] x, final double[] y) {
+        if (x.length != n || y.length != n) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        for (int i=0; i<n; ++i) {
+            final int from = firstCol(i);
+            y[i] = DenseKernels.dot(data, rowStart(i), x, from, endCol(i) - from);
+        }
+        return y;
+    }
+
+    /**
+     * The transpose, an upper triangular matrix if this one is lower
+     * triangular and vice versa.
+     */
+    public TriangularMatrix transpose() {
+        final TriangularMatrix ret = new TriangularMatrix(n, !upper);
+        for (int i=0; i<n; ++i) {
+            final int start = rowStart(i);
+            final int from = firstCol(i);
+            final int to = endCol(i);
+            for (int j=from; j<to; ++j) {
+                ret.data[ret.idx(j, i)] = data[start + j - from];
+            }
+        }
+        return ret;
+    }
+
+    private void checkSolve(final double[] b, final double[] x) {
+        if (b.length != n || x.length != n) {
+            throw new IllegalArgumentException("vectors must have length "+n);
+        }
+    }
+
+    private double diagonal(final int i) {
+        final double d = data[idx(i, i)];
+        if (d == 0.0) {
+            throw new ArithmeticException("matrix is singular");
+        }
+        return d;
+    }
+
+    /**
+     * Solves {@code this * x = b} by substitution, writing the solution into
+     * {@code x}, which may be {@code b}.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public double[] solve(final double[] b, final double[] x) {
+        checkSolve(b, x);
+        if (upper) {
+            for (int i=n-1; i>=0; --i) {
+                final int start = rowStart(i);
+                x[i] = (b[i] - DenseKernels.dot(data, start+1, x, i+1, n-i-1))
+                        / diagonal(i);
+            }
+        } else {
+            for (int i=0; i<n; ++i) {
+                x[i] = (b[i] - DenseKernels.dot(data, rowStart(i), x, 0, i))
+                        / diagonal(i);
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Solves {@code this^T * x = b}, writing the solution into {@code x},
+     * which may be {@code b}. The stored rows are the columns of the
+     * transpose, so every step subtracts one contiguous row from the
+     * remaining right hand side.
+     *
+     * @throws ArithmeticException if the matrix is singular
+     */
+    public double[] solveTransposed(final double[] b, final double[] x) {
+        checkSolve(b, x);
+        if (b != x) {
+            System.arraycopy(b, 0, x, 0, n);
+        }
+        if (upper) {
+            for (int i=0; i<n; ++i) {
+                x[i] /= diagonal(i);
+                DenseKernels.axpy(-x[i], data, rowStart(i)+1, x, i+1, n-i-1);
+            }
+        } else {
+            for (int i=n-1; i>=0; --i) {
+                x[i] /= diagonal(i);
+                DenseKernels.axpy(-x[i], data, rowStart(i), x, 0, i);
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Copies the non-zero cells into a matrix backed by {@code st}.
+     */
+    public Matrix toMatrix(final NestedStorage<Double> st) {
+        final Matrix ret = new Matrix(n, n, st);
+        for (int i=0; i<n; ++i) {
+            final int start = rowStart(i);
+            final int from = firstCol(i);
+            final int to = endCol(i);
+            for (int j=from; j<to; ++j) {
+                final double v = data[start + j - from];
+                if (v != 0.0) {
+                    ret.put(i, j, v);
+                }
+            }
+        }
+        return ret;
+    }
+
+    public TriangularMatrix copy() {
+        final TriangularMatrix ret = new TriangularMatrix(n, upper);
+        System.arraycopy(data, 0, ret.data, 0, data.length);
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "TriangularMatrix("+n+" x "+n+", "+(upper ? "upper" : "lower")+")";
+    }
+}
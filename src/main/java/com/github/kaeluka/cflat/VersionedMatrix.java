@@ -0,0 +1,241 @@
+package com.github.kaeluka.cflat;
+
+import com.github.kaeluka.cflat.storage.HashMapStorage;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+
+/**
+ * A sparse matrix with constant time copy-on-write {@link #snapshot()}s.
+ *
+ * Rows are independent {@link Storage}s, held in a two-level table of
+ * chunks of {@link #CHUNK_SIZE} rows. A snapshot shares the whole table
+ * with the matrix it was taken from. After that, both versions copy
+ * lazily on their first write: the top level of the table once, the
+ * written row's chunk once, and the written row's storage once. Rows
+ * that are never written after a snapshot are never copied, so a
+ * snapshot followed by a batch of updates costs as much as the rows it
+ * touches, independent of the size of the matrix.
+ *
+ * A version is not thread safe, but versions can be used from different
+ * threads once safely published: nothing one version can still reach is
+ * ever modified by another.
+ */
+public class VersionedMatrix {
+    public static final int CHUNK_SIZE = 256;
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int rows;
+    private final int cols;
+    private final Storage<Double> rowPrototype;
+
+    private Chunk[] chunks;
+    /**
+     * Whether this version may modify {@link #chunks} in place; if it
+     * does, {@link #chunkOwned} tells which chunks it may modify.
+     */
+    private boolean tableOwned;
+    private boolean[] chunkOwned;
+
+    /**
+     * A block of row storages. Bit {@code k} of {@code owned} is set if
+     * row {@code k} was created or copied by the version owning the chunk
+     * and so may be written in place.
+     */
+    private static final class Chunk {
+        final Storage<Double>[] rows;
+        final long[] owned = new long[CHUNK_SIZE / 64];
+
+        @SuppressWarnings("unchecked")
+        Chunk() {
+            this.rows = (Storage<Double>[]) new Storage<?>[CHUNK_SIZE];
+        }
+
+        Chunk(final Chunk other) {
+            this.rows = other.rows.clone();
+        }
+
+        boolean owns(final int k) {
+            return (owned[k >>> 6] & (1L << k)) != 0;
+        }
+
+        void own(final int k) {
+            owned[k >>> 6] |= 1L << k;
+        }
+    }
+
+    /**
+     * An empty matrix whose rows are created as empty copies of
+     * {@code rowPrototype}.
+     */
+    public VersionedMatrix(final int rows,
+                           final int cols,
+                           final Storage<Double> rowPrototype) {
+        this(rows, cols, rowPrototype,
+                new Chunk[(rows + CHUNK_SIZE - 1) >>> CHUNK_BITS], true);
+    }
+
+    private VersionedMatrix(final int rows,
+                            final int cols,
+                            final Storage<Double> rowPrototype,
+                            final Chunk[] chunks,
+                            final boolean tableOwned) {
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPrototype = rowPrototype;
+        this.chunks = chunks;
+        this.tableOwned = tableOwned;
+        this.chunkOwned = tableOwned ? new boolean[chunks.length] : null;
+    }
+
+    /**
+     * A versioned matrix that starts out sharing the row storages of
+     * {@code m}; they are copied on the first write. {@code m} must not be
+     * modified while the result or one of its snapshots is in use.
+     * Rows written later are of the same kind as the first row of
+     * {@code m} that holds a value, or {@link HashMapStorage}s if there is
+     * none.
+     */
+    public static VersionedMatrix from(final Matrix m) {
+        final int[] nonNull = m.nonNullRows();
+        final Storage<Double> prototype = nonNull.length > 0
+                ? m.storage.get(nonNull[0]).emptyCopy()
+                : new HashMapStorage<>();
+        final VersionedMatrix ret = new VersionedMatrix(m.getRows(), m.getCols(), prototype);
+        for (final int row : nonNull) {
+            final int c = row >>> CHUNK_BITS;
+            if (ret.chunks[c] == null) {
+                ret.chunks[c] = new Chunk();
+                ret.chunkOwned[c] = true;
+            }
+            ret.chunks[c].rows[row & CHUNK_MASK] = m.storage.get(row);
+        }
+        return ret;
+    }
+
+    public int getRows() { return this.rows; }
+
+    public int getCols() { return this.cols; }
+
+    /**
+     * A new version with the current contents of this one. Takes constant
+     * time; both versions can be read and written independently afterwards.
+     */
+    public VersionedMatrix snapshot() {
+        this.tableOwned = false;
+        this.chunkOwned = null;
+        return new VersionedMatrix(rows, cols, rowPrototype, chunks, false);
+    }
+
+    private Storage<Double> row(final int row) {
+        final Chunk c = chunks[row >>> CHUNK_BITS];
+        return c == null ? null : c.rows[row & CHUNK_MASK];
+    }
+
+    public double get(final int i, final int j) {
+        final Storage<Double> r = row(i);
+        if (r == null) {
+            return 0.0;
+        }
+        final Double v = r.get(j);
+        return v == null ? 0.0 : v;
+    }
+
+    /**
+     * The storage of row {@code row} that this version may write to,
+     * copying whatever it still shares with other versions. Afterwards,
+     * the row's chunk is owned by this version, so a storage returned by a
+     * write can be put back into it.
+     */
+    private Storage<Double> writableRow(final int row) {
+        if (!tableOwned) {
+            chunks = chunks.clone();
+            chunkOwned = new boolean[chunks.length];
+            tableOwned = true;
+        }
+        final int ci = row >>> CHUNK_BITS;
+        Chunk c = chunks[ci];
+        if (c == null) {
+            c = new Chunk();
+            chunks[ci] = c;
+            chunkOwned[ci] = true;
+        } else if (!chunkOwned[ci]) {
+            c = new Chunk(c);
+            chunks[ci] = c;
+            chunkOwned[ci] = true;
+        }
+        final int k = row & CHUNK_MASK;
+        Storage<Double> r = c.rows[k];
+        if (r == null) {
+            r = rowPrototype.emptyCopy();
+            c.rows[k] = r;
+            c.own(k);
+        } else if (!c.owns(k)) {
+            r = r.copy();
+            c.rows[k] = r;
+            c.own(k);
+        }
+        return r;
+    }
+
+    public VersionedMatrix put(final int i, final int j, final double val) {
+        if (i < 0 || i >= rows || j < 0 || j >= cols) {
+            throw new IndexOutOfBoundsException("cell ("+i+", "+j
+                    +") is outside of "+rows+" x "+cols+" matrix");
+        }
+        final Storage<Double> r = writableRow(i);
+        chunks[i >>> CHUNK_BITS].rows[i & CHUNK_MASK] = r.set(j, val);
+        return this;
+    }
+
+    /**
+     * Calls {@code f} with column and value of every non-null cell of
+     * {@code row}.
+     */
+    public void foreachInRow(final int row, final IntDoubleConsumer f) {
+        final Storage<Double> r = row(row);
+        if (r != null) {
+            r.foreachNonNull(col -> f.accept(col, r.get(col)));
+        }
+    }
+
+    /**
+     * Computes {@code y = this * x}.
+     */
+    public double[] multiply(final double[] x, final double[] y) {
+        if (x.length != cols || y.length != rows) {
+            throw new IllegalArgumentException("matrix dimensions don't match!");
+        }
+        final double[] sum = new double[1];
+        for (int i=0; i<rows; ++i) {
+            final Storage<Double> r = row(i);
+            sum[0] = 0.0;
+            if (r != null) {
+                r.foreachNonNull(col -> sum[0] += r.get(col) * x[col]);
+            }
+            y[i] = sum[0];
+        }
+        return y;
+    }
+
+    /**
+     * Copies the non-null cells of this version into a matrix backed by
+     * {@code st}.
+     */
+    public Matrix toMatrix(final NestedStorage<Double> st) {
+        final Matrix ret = new Matrix(rows, cols, st);
+        for (int i=0; i<rows; ++i) {
+            final Storage<Double> r = row(i);
+            if (r != null) {
+                final Storage<Double> out = ret.storage.get(i);
+                r.foreachNonNull(col -> out.set(col, r.get(col)));
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "VersionedMatrix("+this.rows+" x "+this.cols+")";
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.kaeluka.cflat;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The innermost loops of the dense {@link NativeMatrix} operations, on
+ * contiguous ranges of {@code double[]}s.
+ *
+ * This is the Java 21 layer of the multi-release JAR. It uses the vector
+ * API with the preferred species of the host (4 lanes on AVX2, 8 on
+ * AVX-512) if the {@code jdk.incubator.vector} module was resolved at
+ * startup ({@code --add-modules jdk.incubator.vector}); otherwise it falls
+ * back to the same scalar loops as the Java 8 version. The vector code
+ * lives in {@link Simd}, which is only loaded in the former case.
+ */
+final class DenseKernels {
+    private DenseKernels() {}
+
+    private static final boolean VECTORIZED = ModuleLayer.boot()
+            .findModule("jdk.incubator.vector")
+            .isPresent();
+
+    static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    static double dot(final double[] x, final int xOff,
+                      final double[] y, final int yOff,
+                      final int len) {
+        if (VECTORIZED && len >= Simd.LANES) {
+            return Simd.dot(x, xOff, y, yOff, len);
+        }
+        double s = 0.0;
+        for (int i=0; i<len; ++i) {
+            s += x[xOff+i] * y[yOff+i];
+        }
+        return s;
+    }
+
+    static void axpy(final double alpha,
+                     final double[] x, final int xOff,
+                     final double[] y, final int yOff,
+                     final int len) {
+        if (VECTORIZED && len >= Simd.LANES) {
+            Simd.axpy(alpha, x, xOff, y, yOff, len);
+            return;
+        }
+        for (int i=0; i<len; ++i) {
+            y[yOff+i] += alpha * x[xOff+i];
+        }
+    }
+
+    static void axpy4(final double a0, final double a1,
+                      final double a2, final double a3,
+                      final double[] x, final int xOff,
+                      final double[] y, final int yOff, final int yStride,
+                      final int len) {
+        if (VECTORIZED && len >= Simd.LANES) {
+            Simd.axpy4(a0, a1, a2, a3, x, xOff, y, yOff, yStride, len);
+            return;
+        }
+        final int y0 = yOff, y1 = y0+yStride, y2 = y1+yStride, y3 = y2+yStride;
+        for (int i=0; i<len; ++i) {
+            final double x_i = x[xOff+i];
+            y[y0+i] += a0 * x_i;
+            y[y1+i] += a1 * x_i;
+            y[y2+i] += a2 * x_i;
+            y[y3+i] += a3 * x_i;
+        }
+    }
+
+    static void scale(final double alpha,
+                      final double[] x, final int xOff,
+                      final double[] y, final int yOff,
+                      final int len) {
+        if (VECTORIZED && len >= Simd.LANES) {
+            Simd.scale(alpha, x, xOff, y, yOff, len);
+            return;
+        }
+        for (int i=0; i<len; ++i) {
+            y[yOff+i] = alpha * x[xOff+i];
+        }
+    }
+
+    /**
+     * Vectorised loops: full vectors up to {@code loopBound(len)}, then a
+     * scalar tail.
+     */
+    private static final class Simd {
+        static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+        static final int LANES = SPECIES.length();
+
+        static double dot(final double[] x, final int xOff,
+                          final double[] y, final int yOff,
+                          final int len) {
+            final int bound = SPECIES.loopBound(len);
+            DoubleVector acc = DoubleVector.zero(SPECIES);
+            int i = 0;
+            for (; i<bound; i+=LANES) {
+                acc = DoubleVector.fromArray(SPECIES, x, xOff+i)
+                        .fma(DoubleVector.fromArray(SPECIES, y, yOff+i), acc);
+            }
+            double s = acc.reduceLanes(VectorOperators.ADD);
+            for (; i<len; ++i) {
+                s += x[xOff+i] * y[yOff+i];
+            }
+            return s;
+        }
+
+        static void axpy(final double alpha,
+                         final double[] x, final int xOff,
+                         final double[] y, final int yOff,
+                         final int len) {
+            final int bound = SPECIES.loopBound(len);
+            final DoubleVector a = DoubleVector.broadcast(SPECIES, alpha);
+            int i = 0;
+            for (; i<bound; i+=LANES) {
+                DoubleVector.fromArray(SPECIES, x, xOff+i)
+                        .fma(a, DoubleVector.fromArray(SPECIES, y, yOff+i))
+                        .intoArray(y, yOff+i);
+            }
+            for (; i<len; ++i) {
+                y[yOff+i] += alpha * x[xOff+i];
+            }
+        }
+
+        static void axpy4(final double a0, final double a1,
+                          final double a2, final double a3,
+                          final double[] x, final int xOff,
+                          final double[] y, final int yOff, final int yStride,
+                          final int len) {
+            final int y0 = yOff, y1 = y0+yStride, y2 = y1+yStride, y3 = y2+yStride;
+            final int bound = SPECIES.loopBound(len);
+            final DoubleVector v0 = DoubleVector.broadcast(SPECIES, a0);
+            final DoubleVector v1 = DoubleVector.broadcast(SPECIES, a1);
+            final DoubleVector v2 = DoubleVector.broadcast(SPECIES, a2);
+            final DoubleVector v3 = DoubleVector.broadcast(SPECIES, a3);
+            int i = 0;
+            for (; i<bound; i+=LANES) {
+                final DoubleVector xv = DoubleVector.fromArray(SPECIES, x, xOff+i);
+                xv.fma(v0, DoubleVector.fromArray(SPECIES, y, y0+i)).intoArray(y, y0+i);
+                xv.fma(v1, DoubleVector.fromArray(SPECIES, y, y1+i)).intoArray(y, y1+i);
+                xv.fma(v2, DoubleVector.fromArray(SPECIES, y, y2+i)).intoArray(y, y2+i);
+                xv.fma(v3, DoubleVector.fromArray(SPECIES, y, y3+i)).intoArray(y, y3+i);
+            }
+            for (; i<len; ++i) {
+                final double x_i = x[xOff+i];
+                y[y0+i] += a0 * x_i;
+                y[y1+i] += a1 * x_i;
+                y[y2+i] += a2 * x_i;
+                y[y3+i] += a3 * x_i;
+            }
+        }
+
+        static void scale(final double alpha,
+                          final double[] x, final int xOff,
+                          final double[] y, final int yOff,
+                          final int len) {
+            final int bound = SPECIES.loopBound(len);
+            int i = 0;
+            for (; i<bound; i+=LANES) {
+                DoubleVector.fromArray(SPECIES, x, xOff+i)
+                        .mul(alpha)
+                        .intoArray(y, yOff+i);
+            }
+            for (; i<len; ++i) {
+                y[yOff+i] = alpha * x[xOff+i];
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.kaeluka.cflat;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the {@link DenseKernels} against plain scalar loops, for every
+ * length up to a few times the widest vector (8 lanes), so that the vector
+ * loops and their scalar tails are both covered.
+ *
+ * The test lives in the kernels' package because they are package-private.
+ * The multi-release build runs it against the Java 21 layer with
+ * {@code cflat.vectorized} set, in which case it also checks that the
+ * vector path was actually taken.
+ */
+public class DenseKernelsTest {
+    private static final int MAX_LEN = 3*8 + 7;
+    private static final int X_OFF = 3;
+    private static final int Y_OFF = 5;
+    private static final double EPS = 1e-12;
+
+    private static double[] random(final Random random, final int len) {
+        final double[] ret = new double[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = random.nextDouble() - 0.5;
+        }
+        return ret;
+    }
+
+    private static void assertArray(final double[] expected, final double[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(actual[i], closeTo(expected[i], EPS));
+        }
+    }
+
+    @Test
+    public void vectorised() {
+        if (Boolean.getBoolean("cflat.vectorized")) {
+            assertTrue(DenseKernels.isVectorized());
+        }
+    }
+
+    @Test
+    public void dot() {
+        final Random random = new Random(12345);
+        for (int len = 0; len <= MAX_LEN; len++) {
+            final double[] x = random(random, X_OFF + len);
+            final double[] y = random(random, Y_OFF + len);
+            double expected = 0.0;
+            for (int i = 0; i < len; i++) {
+                expected += x[X_OFF+i] * y[Y_OFF+i];
+            }
+            assertThat(DenseKernels.dot(x, X_OFF, y, Y_OFF, len), closeTo(expected, EPS));
+        }
+    }
+
+    @Test
+    public void axpy() {
+        final Random random = new Random(12345);
+        for (int len = 0; len <= MAX_LEN; len++) {
+            final double alpha = random.nextDouble();
+            final double[] x = random(random, X_OFF + len);
+            final double[] y = random(random, Y_OFF + len + 1);
+            final double[] expected = y.clone();
+            for (int i = 0; i < len; i++) {
+                expected[Y_OFF+i] += alpha * x[X_OFF+i];
+            }
+            DenseKernels.axpy(alpha, x, X_OFF, y, Y_OFF, len);
+            assertArray(expected, y);
+        }
+    }
+
+    @Test
+    public void axpy4() {
+        final Random random = new Random(12345);
+        for (int len = 0; len <= MAX_LEN; len++) {
+            final double[] a = random(random, 4);
+            final int stride = len + 2;
+            final double[] x = random(random, X_OFF + len);
+            final double[] y = random(random, Y_OFF + 4*stride);
+            final double[] expected = y.clone();
+            for (int r = 0; r < 4; r++) {
+                for (int i = 0; i < len; i++) {
+                    expected[Y_OFF+r*stride+i] += a[r] * x[X_OFF+i];
+                }
+            }
+            DenseKernels.axpy4(a[0], a[1], a[2], a[3], x, X_OFF, y, Y_OFF, stride, len);
+            assertArray(expected, y);
+        }
+    }
+
+    @Test
+    public void scale() {
+        final Random random = new Random(12345);
+        for (int len = 0; len <= MAX_LEN; len++) {
+            final double alpha = random.nextDouble();
+            final double[] x = random(random, X_OFF + len);
+            final double[] y = random(random, Y_OFF + len + 1);
+            final double[] expected = y.clone();
+            for (int i = 0; i < len; i++) {
+                expected[Y_OFF+i] = alpha * x[X_OFF+i];
+            }
+            DenseKernels.scale(alpha, x, X_OFF, y, Y_OFF, len);
+            assertArray(expected, y);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.kaeluka.cflat.test.benchmarks;
+
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.NativeMatrix;
+import com.github.kaeluka.cflat.storage.ArrayStorage;
+import com.github.kaeluka.cflat.storage.Storage2D;
+import org.HdrHistogram.Histogram;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares the naive and the cache-blocked matrix multiplications on large
+ * square and rectangular inputs. Run with
+ * {@code java -cp ... MatrixMultiplyBenchmark [repetitions]}.
+ */
+public class MatrixMultiplyBenchmark {
+    private static final int WARMUP = 3;
+
+    private static void run(final String name,
+                            final long flops,
+                            final int reps,
+                            final Supplier<Object> f) {
+        final Histogram hist = new Histogram(3600L * 1000 * 1000, 3);
+        for (int i = 0; i < WARMUP + reps; i++) {
+            final long start = System.nanoTime();
+            f.get();
+            final long micros = (System.nanoTime() - start) / 1000;
+            if (i >= WARMUP) {
+                hist.recordValue(micros);
+            }
+        }
+        final double medianMs = hist.getValueAtPercentile(50) / 1000.0;
+        System.out.println(String.format(
+                "%-45s median %10.2fms  max %10.2fms  %8.3f GFLOP/s",
+                name,
+                medianMs,
+                hist.getMaxValue() / 1000.0,
+                flops / (medianMs * 1e6)));
+    }
+
+    private static void nativeCase(final int m, final int n, final int p, final int reps) {
+        final Random random = new Random(12345);
+        final NativeMatrix A = NativeMatrix.from(m, n, random::nextDouble);
+        final NativeMatrix B = NativeMatrix.from(n, p, random::nextDouble);
+        final long flops = 2L * m * n * p;
+        final String dims = m + "x" + n + " * " + n + "x" + p;
+        run("NativeMatrix.multiply      " + dims, flops, reps, () -> A.multiply(B));
+        run("NativeMatrix.multiplyTiled " + dims, flops, reps, () -> A.multiplyTiled(B));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void matrixCase(final int m, final int n, final int p, final int reps) {
+        final Random random = new Random(12345);
+        final Matrix A = Matrix.from(m, n, random::nextDouble,
+                new Storage2D(new ArrayStorage<>(), new ArrayStorage<>()));
+        final Matrix B = Matrix.from(n, p, random::nextDouble,
+                new Storage2D(new ArrayStorage<>(), new ArrayStorage<>()));
+        final long flops = 2L * m * n * p;
+        final String dims = m + "x" + n + " * " + n + "x" + p;
+        run("Matrix.multiply            " + dims, flops, reps, () -> A.multiply(B));
+        run("Matrix.multiplyTiled       " + dims, flops, reps, () -> A.multiplyTiled(B));
+    }
+
+    public static void main(String[] args) {
+        final int reps = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        nativeCase(1024, 1024, 1024, reps);
+        nativeCase(2048, 2048, 2048, reps);
+        nativeCase(4096, 256, 2048, reps);
+        nativeCase(256, 4096, 256, reps);
+
+        matrixCase(200, 200, 200, reps);
+        matrixCase(400, 100, 300, reps);
+    }
+}
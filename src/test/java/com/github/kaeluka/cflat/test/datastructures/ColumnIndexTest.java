@@ -0,0 +1,103 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.storage.Storage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static junit.framework.TestCase.assertTrue;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class ColumnIndexTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    private Matrix dual(final int rows, final int cols) {
+        return new Matrix(rows, cols, mkStorage.get(), mkStorage.get());
+    }
+
+    @Test
+    public void putUpdatesColumns() {
+        final Matrix A = dual(3, 4)
+                .put(0, 1, 1)
+                .put(2, 1, 2)
+                .put(1, 3, 3);
+        assertThat(A.hasColumnIndex(), is(true));
+        final Storage<Double> col = A.getCol(1);
+        assertThat(col.get(0), is(1.0));
+        assertThat(col.get(1), nullValue());
+        assertThat(col.get(2), is(2.0));
+
+        A.put(2, 1, 5);
+        A.cursor().row(1).set(1, 7).add(3, 1);
+        assertThat(A.getCol(1).get(2), is(5.0));
+        assertThat(A.getCol(1).get(1), is(7.0));
+        assertThat(A.getCol(3).get(1), is(4.0));
+    }
+
+    @Test
+    public void existingCellsAreIndexed() {
+        final NestedStorage<Double> st = mkStorage.get();
+        new Matrix(2, 2, st).put(1, 0, 9);
+        final Matrix A = new Matrix(2, 2, st, mkStorage.get());
+        assertThat(A.getCol(0).get(1), is(9.0));
+        assertThat(A.copy().getCol(0).get(1), is(9.0));
+    }
+
+    @Test
+    public void transposedProduct() {
+        final Random random = new Random(12345);
+        final Matrix A = dual(30, 20);
+        final Matrix B = new Matrix(30, 20, mkStorage.get());
+        for (int i = 0; i < 100; i++) {
+            final int r = random.nextInt(30), c = random.nextInt(20);
+            final double v = random.nextDouble();
+            A.put(r, c, v);
+            B.put(r, c, v);
+        }
+        final double[] x = new double[30];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = random.nextDouble();
+        }
+        final double[] y = A.multiplyTransposed(x, new double[20]);
+        final double[] expected = B.multiplyTransposed(x, new double[20]);
+        final double[] viaTranspose = B.transpose().multiply(x, new double[20]);
+        for (int j = 0; j < 20; j++) {
+            assertThat(y[j], closeTo(expected[j], 1e-12));
+            assertThat(y[j], closeTo(viaTranspose[j], 1e-12));
+        }
+    }
+
+    @Test
+    public void luKeepsColumnsInSync() {
+        final Matrix A = dual(3, 3)
+                .put(0, 0, 2).put(0, 1, 1)
+                .put(1, 0, 4).put(1, 1, 3).put(1, 2, 1)
+                .put(2, 1, 2).put(2, 2, 5);
+        A.luInPlace();
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                final Double c = A.getCol(j).get(i);
+                assertThat(c == null ? 0.0 : c, is(A.get(i, j)));
+            }
+        }
+        assertTrue(A.copy().hasColumnIndex());
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.CscMatrix;
+import com.github.kaeluka.cflat.CsrMatrix;
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static junit.framework.TestCase.assertTrue;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class CompressedMatrixTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    private Matrix sparse(final int rows, final int cols, final int nonZeros) {
+        final Random random = new Random(12345);
+        final Matrix ret = new Matrix(rows, cols, mkStorage.get());
+        for (int i = 0; i < nonZeros; i++) {
+            ret.put(random.nextInt(rows), random.nextInt(cols), 1 + random.nextInt(9));
+        }
+        return ret;
+    }
+
+    @Test
+    public void csrRoundTrip() {
+        final Matrix A = sparse(40, 30, 100);
+        final CsrMatrix csr = CsrMatrix.from(A);
+        for (int i = 0; i < A.getRows(); i++) {
+            for (int j = 0; j < A.getCols(); j++) {
+                assertThat(csr.get(i, j), is(A.get(i, j)));
+            }
+        }
+        assertTrue(csr.toMatrix(mkStorage.get()).equalTo(A));
+    }
+
+    @Test
+    public void cscRoundTrip() {
+        final Matrix A = sparse(30, 40, 100);
+        final CscMatrix csc = CscMatrix.from(A);
+        for (int i = 0; i < A.getRows(); i++) {
+            for (int j = 0; j < A.getCols(); j++) {
+                assertThat(csc.get(i, j), is(A.get(i, j)));
+            }
+        }
+        assertTrue(csc.toMatrix(mkStorage.get()).equalTo(A));
+        assertThat(csc.toCsr().nonZeros(), is(csc.nonZeros()));
+    }
+
+    @Test
+    public void rowAndColIteration() {
+        final AtomicInteger seq = new AtomicInteger(1);
+        final Matrix A = Matrix.from(2, 3, seq::getAndIncrement, mkStorage.get());
+        final CsrMatrix csr = CsrMatrix.from(A);
+        final CscMatrix csc = csr.toCsc();
+
+        final double[] rowSum = new double[1];
+        final int[] lastCol = {-1};
+        csr.foreachInRow(1, (col, v) -> {
+            assertTrue(col > lastCol[0]);
+            lastCol[0] = col;
+            rowSum[0] += v;
+        });
+        assertThat(rowSum[0], is(15.0));
+
+        final double[] colSum = new double[1];
+        csc.foreachInCol(2, (row, v) -> colSum[0] += v);
+        assertThat(colSum[0], is(9.0));
+        assertThat(csr.nonZeros(), is(6));
+    }
+}
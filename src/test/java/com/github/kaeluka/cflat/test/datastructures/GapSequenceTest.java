@@ -0,0 +1,95 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.GapSequence;
+import com.github.kaeluka.cflat.storage.Storage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+@RunWith(Parameterized.class)
+public class GapSequenceTest {
+
+    @Parameterized.Parameter()
+    public Supplier<Storage<Integer>> storageSupplier;
+
+    private GapSequence<Integer> mkSequence() {
+        return new GapSequence<>(storageSupplier.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<Storage>> storages() {
+        return Storages.genericStorages();
+    }
+
+    @Test
+    public void addAtCursor() {
+        final GapSequence<Integer> seq = mkSequence();
+        for (int i=0; i<100; ++i) {
+            seq.add(i);
+        }
+        // type in the middle, like an editor would
+        for (int i=0; i<50; ++i) {
+            seq.add(50 + i, -i);
+        }
+        assertThat(seq.size(), is(150));
+        assertThat(seq.get(49), is(49));
+        assertThat(seq.get(50), is(0));
+        assertThat(seq.get(99), is(-49));
+        assertThat(seq.get(100), is(50));
+        assertThat(seq.get(149), is(99));
+    }
+
+    @Test
+    public void removeAtCursor() {
+        final GapSequence<Integer> seq = mkSequence();
+        for (int i=0; i<10; ++i) {
+            seq.add(i);
+        }
+        assertThat(seq.remove(5), is(5));
+        assertThat(seq.remove(4), is(4));
+        assertThat(seq.remove(4), is(6));
+        seq.add(0, -1);
+        assertThat(seq, contains(-1, 0, 1, 2, 3, 7, 8, 9));
+    }
+
+    @Test
+    public void randomEditsMatchArrayList() {
+        final Random rnd = new Random(42);
+        final GapSequence<Integer> seq = mkSequence();
+        final List<Integer> expected = new ArrayList<>();
+        int cursor = 0;
+        for (int i=0; i<2000; ++i) {
+            cursor = Math.max(0, Math.min(expected.size(), cursor + rnd.nextInt(7) - 3));
+            if (rnd.nextInt(3) > 0 || expected.isEmpty()) {
+                seq.add(cursor, i);
+                expected.add(cursor, i);
+            } else {
+                final int at = Math.min(cursor, expected.size() - 1);
+                assertThat(seq.remove(at), is(expected.remove(at)));
+            }
+        }
+        assertThat(seq, is(expected));
+        final List<Integer> seen = new ArrayList<>();
+        seq.forEach(seen::add);
+        assertThat(seen, is(expected));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getInGap() {
+        final GapSequence<Integer> seq = mkSequence();
+        seq.add(0);
+        seq.get(1);
+    }
+}
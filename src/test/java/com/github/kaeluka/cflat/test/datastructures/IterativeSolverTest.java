@@ -0,0 +1,154 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.Ilu0Preconditioner;
+import com.github.kaeluka.cflat.IterativeSolver;
+import com.github.kaeluka.cflat.JacobiPreconditioner;
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.Preconditioner;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class IterativeSolverTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    private static final int GRID = 12;
+    private static final int N = GRID * GRID;
+
+    /**
+     * The 5-point finite difference operator on a square grid, plus a
+     * first-order convection term of strength {@code c} that makes it
+     * non-symmetric for {@code c != 0}.
+     */
+    private Matrix poisson(final double c) {
+        final Matrix A = new Matrix(N, N, mkStorage.get());
+        for (int i = 0; i < GRID; i++) {
+            for (int j = 0; j < GRID; j++) {
+                final int row = i * GRID + j;
+                A.put(row, row, 4);
+                if (i > 0) A.put(row, row - GRID, -1 - c);
+                if (i < GRID - 1) A.put(row, row + GRID, -1 + c);
+                if (j > 0) A.put(row, row - 1, -1 - c);
+                if (j < GRID - 1) A.put(row, row + 1, -1 + c);
+            }
+        }
+        return A;
+    }
+
+    private static double[] rhs(final Matrix A, final double[] expected) {
+        return A.multiply(expected, new double[N]);
+    }
+
+    private static double[] solution() {
+        final Random random = new Random(12345);
+        final double[] ret = new double[N];
+        for (int i = 0; i < N; i++) {
+            ret[i] = random.nextDouble();
+        }
+        return ret;
+    }
+
+    private static void assertSolved(final IterativeSolver.Result res,
+                                     final double[] expected,
+                                     final double[] x) {
+        assertThat(res.toString(), res.converged(), is(true));
+        for (int i = 0; i < N; i++) {
+            assertThat(x[i], closeTo(expected[i], 1e-6));
+        }
+    }
+
+    @Test
+    public void conjugateGradients() {
+        final Matrix A = poisson(0);
+        final double[] expected = solution();
+        final double[] b = rhs(A, expected);
+        final Preconditioner[] preconditioners = {
+                Preconditioner.NONE,
+                new JacobiPreconditioner(A),
+                new Ilu0Preconditioner(A)
+        };
+        final int[] iterations = new int[preconditioners.length];
+        for (int i = 0; i < preconditioners.length; i++) {
+            final double[] x = new double[N];
+            final IterativeSolver.Result res = new IterativeSolver(A)
+                    .withPreconditioner(preconditioners[i])
+                    .cg(b, x);
+            assertSolved(res, expected, x);
+            iterations[i] = res.iterations();
+        }
+        assertThat(iterations[2], lessThan(iterations[0]));
+    }
+
+    @Test
+    public void nonSymmetric() {
+        final Matrix A = poisson(0.3);
+        final double[] expected = solution();
+        final double[] b = rhs(A, expected);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (final Preconditioner p : new Preconditioner[] {
+                    Preconditioner.NONE, new Ilu0Preconditioner(A)}) {
+                final IterativeSolver solver = new IterativeSolver(A)
+                        .withPreconditioner(p)
+                        .parallel(pool, 8);
+                double[] x = new double[N];
+                assertSolved(solver.gmres(b, x, 20), expected, x);
+                x = new double[N];
+                assertSolved(solver.bicgstab(b, x), expected, x);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void bicgstabBreakdown() {
+        // skew-symmetric, so r.(A*r) = 0 and the first step divides by zero
+        final Matrix A = new Matrix(N, N, mkStorage.get());
+        for (int i = 0; i < N; i += 2) {
+            A.put(i, i + 1, 1.0);
+            A.put(i + 1, i, -1.0);
+        }
+        final double[] expected = solution();
+        final double[] b = rhs(A, expected);
+        final double[] x = new double[N];
+        final IterativeSolver.Result res = new IterativeSolver(A).bicgstab(b, x);
+        assertThat(res.converged(), is(false));
+        assertThat(Double.isNaN(res.residual()), is(false));
+        for (int i = 0; i < N; i++) {
+            assertThat(Double.isNaN(x[i]), is(false));
+        }
+        assertSolved(new IterativeSolver(A).gmres(b, x), expected, x);
+    }
+
+    @Test
+    public void iterationLimit() {
+        final Matrix A = poisson(0);
+        final double[] b = rhs(A, solution());
+        final IterativeSolver.Result res = new IterativeSolver(A)
+                .withMaxIterations(3)
+                .cg(b, new double[N]);
+        assertThat(res.converged(), is(false));
+        assertThat(res.iterations(), is(3));
+    }
+}
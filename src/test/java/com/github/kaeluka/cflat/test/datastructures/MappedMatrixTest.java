@@ -0,0 +1,76 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.MappedMatrix;
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static junit.framework.TestCase.assertTrue;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class MappedMatrixTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    @Test
+    public void writeThenOpen() throws IOException {
+        final int ROWS = 300;
+        final int COLS = 200;
+        final Random random = new Random(12345);
+        final Matrix A = new Matrix(ROWS, COLS, mkStorage.get());
+        for (int i = 0; i < 1000; i++) {
+            A.put(random.nextInt(ROWS), random.nextInt(COLS), random.nextDouble());
+        }
+        final Path file = tmp.newFile().toPath();
+        MappedMatrix.write(A, file);
+
+        final MappedMatrix mapped = MappedMatrix.open(file);
+        assertThat(mapped.getRows(), is(ROWS));
+        assertThat(mapped.getCols(), is(COLS));
+        for (int i = 0; i < ROWS; i++) {
+            for (int j = 0; j < COLS; j++) {
+                assertThat(mapped.get(i, j), is(A.get(i, j)));
+            }
+        }
+        assertTrue(mapped.toMatrix(mkStorage.get()).equalTo(A));
+        assertTrue(MappedMatrix.read(file, mkStorage.get()).equalTo(A));
+
+        final double[] x = new double[COLS];
+        for (int i = 0; i < COLS; i++) {
+            x[i] = random.nextDouble();
+        }
+        final double[] expected = A.multiply(x, new double[ROWS]);
+        final double[] actual = mapped.multiply(x, new double[ROWS]);
+        for (int i = 0; i < ROWS; i++) {
+            assertThat(actual[i], closeTo(expected[i], 0.00001));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        MappedMatrix.open(tmp.newFile().toPath());
+    }
+}
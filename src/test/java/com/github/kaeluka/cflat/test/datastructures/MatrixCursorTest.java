@@ -0,0 +1,85 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.MatrixCursor;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class MatrixCursorTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    @Test
+    public void readAndWrite() {
+        final Matrix A = new Matrix(3, 4, mkStorage.get())
+                .put(1, 2, 5);
+        final MatrixCursor c = A.cursor();
+        assertThat(c.row(), is(-1));
+        c.row(1);
+        assertThat(c.row(), is(1));
+        assertThat(c.get(2), is(5.0));
+        assertThat(c.get(0), is(0.0));
+        assertThat(c.has(0), is(false));
+
+        c.set(0, 3).add(2, 1).add(3, 7);
+        assertThat(A.get(1, 0), is(3.0));
+        assertThat(A.get(1, 2), is(6.0));
+        assertThat(A.get(1, 3), is(7.0));
+
+        c.row(2).set(1, -1);
+        assertThat(A.get(2, 1), is(-1.0));
+        assertThat(A.get(1, 1), is(0.0));
+    }
+
+    @Test
+    public void foreachNonNull() {
+        final Matrix A = new Matrix(2, 5, mkStorage.get())
+                .put(0, 4, 4)
+                .put(0, 1, 1)
+                .put(1, 3, 3);
+        final MatrixCursor c = A.cursor().row(0);
+        final List<Integer> cols = new ArrayList<>();
+        c.foreachNonNull((col, v) -> {
+            cols.add(col);
+            c.set(col, 10*v);
+        });
+        assertThat(cols, contains(1, 4));
+        assertThat(A.get(0, 1), is(10.0));
+        assertThat(A.get(0, 4), is(40.0));
+        assertThat(A.get(1, 3), is(3.0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rowOutOfBounds() {
+        new Matrix(2, 2, mkStorage.get()).cursor().row(2);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void colOutOfBounds() {
+        new Matrix(2, 2, mkStorage.get()).cursor().row(0).set(2, 1.0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noRowPinned() {
+        new Matrix(2, 2, mkStorage.get()).cursor().get(0);
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class MatrixExprTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    private Matrix A() {
+        return new Matrix(3, 3, mkStorage.get())
+                .put(0, 0, 1)
+                .put(0, 2, 2)
+                .put(2, 1, 3);
+    }
+
+    private Matrix B() {
+        return new Matrix(3, 3, mkStorage.get())
+                .put(0, 0, 10)
+                .put(1, 1, 20)
+                .put(2, 1, 30);
+    }
+
+    @Test
+    public void sumAndDifference() {
+        final Matrix S = A().expr().plus(B()).minus(B().expr().scale(0.5)).evaluate();
+        assertThat(S.get(0, 0), is(6.0));
+        assertThat(S.get(0, 2), is(2.0));
+        assertThat(S.get(1, 1), is(10.0));
+        assertThat(S.get(2, 1), is(18.0));
+        assertThat(S.get(1, 0), is(0.0));
+        assertThat(S.getRow(1).has(0), is(false));
+    }
+
+    @Test
+    public void hadamardKeepsIntersection() {
+        final Matrix H = A().expr().hadamard(B()).evaluate();
+        assertThat(H.get(0, 0), is(10.0));
+        assertThat(H.get(2, 1), is(90.0));
+        assertThat(H.getRow(0).has(2), is(false));
+        assertThat(H.getRow(1).has(1), is(false));
+    }
+
+    @Test
+    public void axpyAndMap() {
+        final Matrix R = A().expr().axpy(2.0, B()).map(v -> v + 1).evaluate();
+        assertThat(R.get(0, 0), is(13.0));
+        assertThat(R.get(0, 2), is(5.0));
+        assertThat(R.get(1, 1), is(21.0));
+        assertThat(R.get(2, 1), is(37.0));
+        assertThat(R.get(2, 2), is(0.0));
+    }
+
+    @Test
+    public void sumOfHadamard() {
+        // (0, 2) is null in the product but not in the sum
+        final Matrix R = A().expr().hadamard(B()).map(v -> -v).plus(A()).evaluate();
+        assertThat(R.get(0, 0), is(-9.0));
+        assertThat(R.get(0, 2), is(2.0));
+        assertThat(R.get(2, 1), is(-87.0));
+        assertThat(R.getRow(1).has(1), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dimensionMismatch() {
+        A().expr().plus(new Matrix(2, 3, mkStorage.get()));
+    }
+}
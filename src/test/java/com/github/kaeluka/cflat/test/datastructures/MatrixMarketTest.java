@@ -0,0 +1,90 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.MatrixMarket;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class MatrixMarketTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    @Test
+    public void readGeneral() throws IOException {
+        final String mtx = "%%MatrixMarket matrix coordinate real general\n" +
+                "% a comment\n" +
+                "3 4 5\n" +
+                "3 4 1.5\n" +
+                "1 1 2\n" +
+                "2 3 -1e2\n" +
+                "1 4 7.0\n" +
+                "3 1 0.25\n";
+        // a batch of 2 forces several flushes
+        final Matrix A = MatrixMarket.read(new StringReader(mtx), mkStorage.get(), 2);
+        assertThat(A.getRows(), is(3));
+        assertThat(A.getCols(), is(4));
+        assertThat(A.get(0, 0), is(2.0));
+        assertThat(A.get(0, 3), is(7.0));
+        assertThat(A.get(1, 2), is(-100.0));
+        assertThat(A.get(2, 0), is(0.25));
+        assertThat(A.get(2, 3), is(1.5));
+        assertThat(A.get(1, 1), is(0.0));
+    }
+
+    @Test
+    public void readSymmetricPattern() throws IOException {
+        final String mtx = "%%MatrixMarket matrix coordinate pattern symmetric\n" +
+                "3 3 3\n" +
+                "1 1\n" +
+                "2 1\n" +
+                "3 2\n";
+        final Matrix A = MatrixMarket.read(new StringReader(mtx), mkStorage.get());
+        assertThat(A.get(0, 0), is(1.0));
+        assertThat(A.get(1, 0), is(1.0));
+        assertThat(A.get(0, 1), is(1.0));
+        assertThat(A.get(2, 1), is(1.0));
+        assertThat(A.get(1, 2), is(1.0));
+        assertThat(A.get(2, 2), is(0.0));
+    }
+
+    @Test
+    public void skipsBlankLines() throws IOException {
+        final String mtx = "%%MatrixMarket matrix coordinate real general\n" +
+                "  \n" +
+                "2 2 2\n" +
+                "\t\n" +
+                "1 2 3.0\n" +
+                "   \n" +
+                "2 1 4.0\n" +
+                " \r\n";
+        final Matrix A = MatrixMarket.read(new StringReader(mtx), mkStorage.get());
+        assertThat(A.get(0, 1), is(3.0));
+        assertThat(A.get(1, 0), is(4.0));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOutOfRange() throws IOException {
+        final String mtx = "%%MatrixMarket matrix coordinate real general\n" +
+                "2 2 1\n" +
+                "3 1 1.0\n";
+        MatrixMarket.read(new StringReader(mtx), mkStorage.get());
+    }
+}
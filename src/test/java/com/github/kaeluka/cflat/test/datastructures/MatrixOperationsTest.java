@@ -1,7 +1,10 @@
 package com.github.kaeluka.cflat.test.datastructures;
 
 import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.MatrixLU;
+import com.github.kaeluka.cflat.MatrixView;
 import com.github.kaeluka.cflat.NativeMatrix;
+import com.github.kaeluka.cflat.NativeMatrixLU;
 import com.github.kaeluka.cflat.Sequence;
 import com.github.kaeluka.cflat.storage.NestedStorage;
 import com.github.kaeluka.cflat.storage.Storage;
@@ -11,10 +14,12 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import static junit.framework.TestCase.assertTrue;
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -96,6 +101,140 @@ public class MatrixOperationsTest {
         assertThat(A_B.get(1,1), is(154.0));
     }
 
+    @Test
+    public void NativeA_times_B() {
+        final AtomicInteger seq = new AtomicInteger(1);
+        final NativeMatrix A = NativeMatrix.from(M, N, seq::getAndIncrement);
+        final NativeMatrix B = NativeMatrix.from(N, M, seq::getAndIncrement);
+
+        final NativeMatrix A_B = A.multiply(B);
+
+        assertThat(A_B.getRows(), is(2));
+        assertThat(A_B.getCols(), is(2));
+        assertThat(A_B.get(0,0), is(58.0));
+        assertThat(A_B.get(0,1), is(64.0));
+        assertThat(A_B.get(1,0), is(139.0));
+        assertThat(A_B.get(1,1), is(154.0));
+        assertTrue(A_B.transpose().equalTo(B.transpose().multiply(A.transpose())));
+        assertThat(A_B.multiply(0.5).get(1,1), is(77.0));
+    }
+
+    @Test
+    public void tiledMultiply() {
+        final Random random = new Random(12345);
+        final Matrix A = Matrix.from(13, 7, () -> random.nextInt(5), mkStorage.get());
+        final Matrix B = Matrix.from(7, 11, () -> random.nextInt(5), mkStorage.get());
+        assertTrue(A.multiplyTiled(B, 3, 4).equalTo(A.multiply(B), 0.00001));
+        assertTrue(A.multiplyTiled(B).equalTo(A.multiply(B), 0.00001));
+
+        final NativeMatrix nA = NativeMatrix.from(37, 19, random::nextDouble);
+        final NativeMatrix nB = NativeMatrix.from(19, 23, random::nextDouble);
+        assertTrue(nA.multiplyTiled(nB, 5, 4, 8).equalTo(nA.multiply(nB), 0.00001));
+        assertTrue(nA.multiplyTiled(nB).equalTo(nA.multiply(nB), 0.00001));
+    }
+
+    @Test
+    public void tiledMultiplySparse() {
+        final Random random = new Random(54321);
+        final Matrix A = new Matrix(20, 30, mkStorage.get());
+        final Matrix B = new Matrix(30, 25, mkStorage.get());
+        for (int n=0; n<40; ++n) {
+            A.put(random.nextInt(20), random.nextInt(30), random.nextInt(9) + 1);
+            B.put(random.nextInt(30), random.nextInt(25), random.nextInt(9) + 1);
+        }
+        assertTrue(A.multiplyTiled(B, 4, 3).equalTo(A.multiply(B), 0.00001));
+        assertTrue(A.multiplyTiled(B, 1, 1).equalTo(A.multiply(B), 0.00001));
+        assertTrue(A.multiplyTiled(B, 64, 64).equalTo(A.multiply(B), 0.00001));
+    }
+
+    @Test
+    public void parallelMultiply() {
+        final Random random = new Random(12345);
+        final Matrix A = Matrix.from(29, 7, () -> random.nextInt(5), mkStorage.get());
+        final Matrix B = Matrix.from(7, 11, () -> random.nextInt(5), mkStorage.get());
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertTrue(A.multiply(B, pool, 1).equalTo(A.multiply(B), 0.00001));
+            assertTrue(A.multiply(B, pool, 8).equalTo(A.multiply(B), 0.00001));
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(A.multiplyParallel(B).equalTo(A.multiply(B), 0.00001));
+    }
+
+    @Test
+    public void parallelMultiplySparse() {
+        // rows of A refer to empty rows of B, which tasks must skip
+        final Matrix A = new Matrix(40, 10, mkStorage.get());
+        final Matrix B = new Matrix(10, 10, mkStorage.get());
+        for (int i=0; i<40; ++i) {
+            A.put(i, i % 10, i + 1);
+        }
+        B.put(0, 3, 2).put(5, 7, -1).put(9, 0, 0.5);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertTrue(A.multiply(B, pool, 1).equalTo(A.multiply(B), 0.00001));
+            assertTrue(A.multiply(B, pool, 7).equalTo(A.multiply(B), 0.00001));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void A_times_vector() {
+        final AtomicInteger seq = new AtomicInteger(1);
+        final Matrix A = Matrix.from(M, N, seq::getAndIncrement, mkStorage.get());
+        final double[] x = {1, 0, -1};
+        final double[] y = A.multiply(x, new double[M]);
+        assertThat(y[0], is(-2.0));
+        assertThat(y[1], is(-2.0));
+
+        final Random random = new Random(12345);
+        final Matrix B = new Matrix(50, 40, mkStorage.get());
+        for (int i = 0; i < 200; i++) {
+            B.put(random.nextInt(50), random.nextInt(40), random.nextDouble());
+        }
+        final double[] v = new double[40];
+        for (int i = 0; i < v.length; i++) {
+            v[i] = random.nextDouble();
+        }
+        final double[] seqResult = B.multiply(v, new double[50]);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final double[] parResult = B.multiply(v, new double[50], pool, 3);
+            for (int i = 0; i < 50; i++) {
+                assertThat(parResult[i], is(seqResult[i]));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void sparseProduct() {
+        final int SIZE = 60;
+        final Random random = new Random(12345);
+        final Matrix A = new Matrix(SIZE, SIZE, mkStorage.get());
+        final Matrix B = new Matrix(SIZE, SIZE, mkStorage.get());
+        final NativeMatrix nA = new NativeMatrix(SIZE, SIZE);
+        final NativeMatrix nB = new NativeMatrix(SIZE, SIZE);
+        for (int i = 0; i < 2*SIZE; i++) {
+            final int r = random.nextInt(SIZE), c = random.nextInt(SIZE);
+            A.put(r, c, 1.0);
+            nA.put(r, c, 1.0);
+            final int r2 = random.nextInt(SIZE), c2 = random.nextInt(SIZE);
+            B.put(r2, c2, 2.0);
+            nB.put(r2, c2, 2.0);
+        }
+        final Matrix A_B = A.multiply(B);
+        final NativeMatrix expected = nA.multiply(nB);
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                assertThat(A_B.get(i, j), is(expected.get(i, j)));
+            }
+        }
+    }
+
     @Test
     public void rowSetTest() {
         final AtomicInteger seq = new AtomicInteger(N*M);
@@ -182,6 +321,43 @@ public class MatrixOperationsTest {
         assertThat(At.get(2,1), is(6.0));
     }
 
+    @Test
+    public void views() {
+        final AtomicInteger seq = new AtomicInteger(1);
+        final Matrix A = Matrix.from(3, 4, seq::getAndIncrement, mkStorage.get());
+        final MatrixView At = A.transposeView();
+        assertThat(At.getRows(), is(4));
+        assertThat(At.getCols(), is(3));
+        assertTrue(At.toMatrix().equalTo(A.transpose()));
+
+        final MatrixView block = A.view(1, 3, 1, 4);
+        assertThat(block.get(0, 0), is(6.0));
+        assertThat(block.get(1, 2), is(12.0));
+        assertThat(block.transpose().get(2, 1), is(12.0));
+        assertThat(At.view(1, 4, 1, 3).get(2, 1), is(12.0));
+
+        block.put(0, 0, 60.0);
+        assertThat(A.get(1, 1), is(60.0));
+    }
+
+    @Test
+    public void multiplyViews() {
+        final Random random = new Random(12345);
+        final Matrix A = Matrix.from(7, 5, () -> random.nextInt(5), mkStorage.get());
+        final Matrix B = Matrix.from(6, 5, () -> random.nextInt(5), mkStorage.get());
+        assertTrue(A.multiply(B.transposeView())
+                .equalTo(A.multiply(B.transpose()), 0.00001));
+
+        final MatrixView blockT = B.view(1, 5, 1, 4).transpose();
+        final Matrix C = Matrix.from(2, 3, () -> random.nextInt(5), mkStorage.get());
+        assertTrue(C.multiply(blockT)
+                .equalTo(C.multiply(blockT.toMatrix()), 0.00001));
+
+        final MatrixView block = B.view(2, 5, 1, 5);
+        assertTrue(C.multiply(block)
+                .equalTo(C.multiply(block.toMatrix()), 0.00001));
+    }
+
     @Test
     public void LUDecomposition() {
         final int N = 3;
@@ -199,6 +375,100 @@ public class MatrixOperationsTest {
         assertTrue(L.multiply(U).equalTo(A, 0.00001));
     }
 
+    @Test
+    public void pivotingLUSolve() {
+        // a zero in the top left corner breaks LU without pivoting
+        final Iterator<Integer> seq = Arrays.stream(new int[] {
+                0, 2, 1,
+                1, 1, 1,
+                2, 1, 0}).iterator();
+        final Matrix A = Matrix.from(3, 3, seq::next, mkStorage.get());
+        final MatrixLU lu = A.lu();
+        final double[] x = lu.solve(new double[] {7, 6, 4});
+        assertThat(x[0], closeTo(1.0, 0.00001));
+        assertThat(x[1], closeTo(2.0, 0.00001));
+        assertThat(x[2], closeTo(3.0, 0.00001));
+
+        final Matrix PA = new Matrix(3, 3, mkStorage.get());
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                PA.put(i, j, A.get(lu.pivot()[i], j));
+            }
+        }
+        assertTrue(lu.getL().multiply(lu.getU()).equalTo(PA, 0.00001));
+        assertTrue(A.multiply(lu.solve(A)).equalTo(A, 0.00001));
+    }
+
+    @Test
+    public void LUSolveReusesX() {
+        final Iterator<Integer> seq = Arrays.stream(new int[] {
+                0, 2, 1,
+                1, 1, 1,
+                2, 1, 0}).iterator();
+        final Matrix A = Matrix.from(3, 3, seq::next, mkStorage.get());
+        final MatrixLU lu = A.lu();
+        final Matrix ones = Matrix.from(3, 2, () -> 1.0, mkStorage.get());
+        final Matrix X = new Matrix(3, 2, mkStorage.get());
+        assertTrue(lu.solve(A.multiply(ones), X).equalTo(ones, 0.00001));
+
+        // the solution for the first two columns of A is mostly zero
+        final Matrix B = new Matrix(3, 2, mkStorage.get());
+        final Matrix expected = new Matrix(3, 2, mkStorage.get());
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 2; j++) {
+                B.put(i, j, A.get(i, j));
+                expected.put(i, j, i == j ? 1 : 0);
+            }
+        }
+        assertTrue(lu.solve(B, X).equalTo(expected, 0.00001));
+    }
+
+    @Test
+    public void NativePivotingLUSolve() {
+        final int N = 50;
+        final Random random = new Random(12345);
+        final NativeMatrix A = NativeMatrix.from(N, N, () -> random.nextDouble()*99.0);
+        A.put(0, 0, 0.0);
+        final NativeMatrixLU lu = A.lu();
+        final NativeMatrix B = NativeMatrix.from(N, 3, random::nextDouble);
+        final NativeMatrix X = lu.solve(B);
+        assertTrue(A.multiply(X).equalTo(B, 0.00001));
+
+        final double[] b = new double[N];
+        for (int i = 0; i < N; i++) {
+            b[i] = B.get(i, 1);
+        }
+        final double[] x = lu.solve(b);
+        for (int i = 0; i < N; i++) {
+            assertThat(x[i], closeTo(X.get(i, 1), 0.00001));
+        }
+    }
+
+    @Test
+    public void NativeBlockedLU() {
+        final int N = 101;
+        final Random random = new Random(12345);
+        final NativeMatrix A = NativeMatrix.from(N, N, () -> random.nextDouble()*99.0);
+        final NativeMatrixLU expected = A.lu();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final NativeMatrixLU lu = A.luBlocked(pool, 16, 8);
+            assertThat(lu.pivot(), is(expected.pivot()));
+            assertTrue(lu.getL().equalTo(expected.getL(), 0.00001));
+            assertTrue(lu.getU().equalTo(expected.getU(), 0.00001));
+        } finally {
+            pool.shutdown();
+        }
+        final NativeMatrix B = NativeMatrix.from(N, 2, random::nextDouble);
+        assertTrue(A.multiply(A.luBlocked().solve(B)).equalTo(B, 0.00001));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void singularLU() {
+        final NativeMatrix A = NativeMatrix.from(3, 3, () -> 1.0);
+        A.lu();
+    }
+
     @Test
     public void NativeLUDecompositionLarge() {
         final int N = 50;
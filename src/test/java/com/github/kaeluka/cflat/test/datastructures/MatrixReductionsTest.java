@@ -0,0 +1,102 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.MatrixReductions;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class MatrixReductionsTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    /*
+     *  1  0 -2
+     *  0  0  0
+     *  3  4  0
+     */
+    private Matrix A() {
+        return new Matrix(3, 3, mkStorage.get())
+                .put(0, 0, 1)
+                .put(0, 2, -2)
+                .put(2, 0, 3)
+                .put(2, 1, 4);
+    }
+
+    @Test
+    public void rowsAndColumns() {
+        final Matrix A = A();
+        assertArrayEquals(new double[] {-1, 0, 7}, MatrixReductions.rowSums(A), 0.0);
+        assertArrayEquals(new double[] {4, 4, -2}, MatrixReductions.colSums(A), 0.0);
+        assertArrayEquals(new int[] {2, 0, 2}, MatrixReductions.rowNonZeros(A));
+        assertArrayEquals(new int[] {2, 1, 1}, MatrixReductions.colNonZeros(A));
+        assertThat(MatrixReductions.nonZeros(A), is(4L));
+    }
+
+    @Test
+    public void norms() {
+        final Matrix A = A();
+        assertThat(MatrixReductions.frobeniusNorm(A), closeTo(Math.sqrt(30), 1e-12));
+        assertThat(MatrixReductions.infinityNorm(A), is(7.0));
+        assertThat(MatrixReductions.oneNorm(A), is(4.0));
+    }
+
+    @Test
+    public void minMaxCountImplicitZeros() {
+        final Matrix A = A();
+        assertThat(MatrixReductions.min(A), is(-2.0));
+        assertThat(MatrixReductions.max(A), is(4.0));
+
+        final Matrix B = new Matrix(1, 2, mkStorage.get())
+                .put(0, 0, 5)
+                .put(0, 1, 6);
+        assertThat(MatrixReductions.min(B), is(5.0));
+        final Matrix C = new Matrix(1, 2, mkStorage.get()).put(0, 1, 6);
+        assertThat(MatrixReductions.min(C), is(0.0));
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        final int n = 50;
+        final Matrix A = new Matrix(n, n, mkStorage.get());
+        for (int i=0; i<n; ++i) {
+            for (int j=0; j<n; j+=1+i%4) {
+                A.put(i, j, i - 2*j + 0.5);
+            }
+        }
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertArrayEquals(MatrixReductions.rowSums(A),
+                    MatrixReductions.rowSums(A, pool, 3), 0.0);
+            assertArrayEquals(MatrixReductions.colSums(A),
+                    MatrixReductions.colSums(A, pool, 3), 1e-9);
+            assertArrayEquals(MatrixReductions.colNonZeros(A),
+                    MatrixReductions.colNonZeros(A, pool, 3));
+            assertThat(MatrixReductions.oneNorm(A, pool, 3),
+                    closeTo(MatrixReductions.oneNorm(A), 1e-9));
+            assertThat(MatrixReductions.frobeniusNorm(A, pool, 3),
+                    closeTo(MatrixReductions.frobeniusNorm(A), 1e-9));
+            assertThat(MatrixReductions.min(A, pool, 3), is(MatrixReductions.min(A)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.NativeMatrix;
+import com.github.kaeluka.cflat.OffHeapStorage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapStorageTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    // 3 rows of 7 doubles per page, so that every operation crosses pages
+    private static final int PAGE_BYTES = 3 * 7 * 8;
+
+    private OffHeapStorage mkStorage(final int width) throws IOException {
+        return OffHeapStorage.create(tmp.newFile().toPath(), width, PAGE_BYTES, false);
+    }
+
+    private Matrix mk(final NativeMatrix m) throws IOException {
+        final Matrix ret = new Matrix(m.getRows(), m.getCols(), mkStorage(m.getCols()));
+        for (int i = 0; i < m.getRows(); i++) {
+            for (int j = 0; j < m.getCols(); j++) {
+                ret.put(i, j, m.get(i, j));
+            }
+        }
+        return ret;
+    }
+
+    private static void close(final Matrix m) {
+        ((OffHeapStorage) m.storage).close();
+    }
+
+    /**
+     * The number of temporary storage files next to the test's matrices.
+     */
+    private int tempFiles() throws IOException {
+        int ret = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(
+                tmp.getRoot().toPath(), "cflat-matrix*")) {
+            for (final Path ignored : files) {
+                ret++;
+            }
+        }
+        return ret;
+    }
+
+    private static void assertEqual(final Matrix actual, final NativeMatrix expected) {
+        assertThat(actual.getRows(), is(expected.getRows()));
+        assertThat(actual.getCols(), is(expected.getCols()));
+        for (int i = 0; i < expected.getRows(); i++) {
+            for (int j = 0; j < expected.getCols(); j++) {
+                assertThat(actual.get(i, j), closeTo(expected.get(i, j), 0.00001));
+            }
+        }
+    }
+
+    @Test
+    public void multiplyAndTranspose() throws IOException {
+        final Random random = new Random(12345);
+        final NativeMatrix A = NativeMatrix.from(10, 7, random::nextDouble);
+        final NativeMatrix B = NativeMatrix.from(7, 5, random::nextDouble);
+        final Matrix a = mk(A);
+        final Matrix b = mk(B);
+        assertEqual(a, A);
+        assertEqual(a.multiply(b), A.multiply(B));
+        assertEqual(a.multiplyTiled(b, 4, 3), A.multiply(B));
+        // the transpose has wider rows than the storage it was copied from
+        assertEqual(a.transpose(), A.transpose());
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEqual(a.multiply(b, pool, 2), A.multiply(B));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void luSolve() throws IOException {
+        final int N = 7;
+        final Random random = new Random(12345);
+        final NativeMatrix A = NativeMatrix.from(N, N, () -> random.nextDouble()*99.0);
+        A.put(0, 0, 0.0);
+        final double[] b = new double[N];
+        for (int i = 0; i < N; i++) {
+            b[i] = random.nextDouble();
+        }
+        final double[] expected = A.lu().solve(b);
+        final double[] x = mk(A).luInPlace().solve(b, new double[N]);
+        for (int i = 0; i < N; i++) {
+            assertThat(x[i], closeTo(expected[i], 0.00001));
+        }
+    }
+
+    @Test
+    public void readsDontMapPages() throws IOException {
+        final OffHeapStorage st = mkStorage(7);
+        assertThat(st.get(1000).get(3), is(nullValue()));
+        assertThat(st.has(1000), is(false));
+        assertThat(st.bytesUsed(), is(0L));
+        st.get(4).set(2, 1.5);
+        assertThat(st.bytesUsed(), is((long) PAGE_BYTES));
+        assertThat(st.maxIdx(), is(5));
+    }
+
+    @Test
+    public void widenKeepsRows() throws IOException {
+        final OffHeapStorage st = mkStorage(7);
+        for (int row = 0; row < 10; row++) {
+            st.get(row).set(row % 7, row + 1.0);
+        }
+        st.get(2).set(20, -1.0);
+        assertThat(st.width() >= 21, is(true));
+        for (int row = 0; row < 10; row++) {
+            assertThat(st.get(row).get(row % 7), is(row + 1.0));
+        }
+        assertThat(st.get(2).get(20), is(-1.0));
+        assertThat(st.get(3).get(20), is(nullValue()));
+    }
+
+    @Test
+    public void reopen() throws IOException {
+        final Path file = tmp.newFile().toPath();
+        final Matrix m = new Matrix(5, 4, OffHeapStorage.create(file, 4, PAGE_BYTES, false));
+        m.put(0, 0, 1).put(4, 3, 2);
+        final Matrix reopened = new Matrix(5, 4, OffHeapStorage.create(file, 4, PAGE_BYTES, true));
+        assertThat(reopened.get(0, 0), is(1.0));
+        assertThat(reopened.get(4, 3), is(2.0));
+        assertTrue(reopened.equalTo(m));
+        final Matrix emptied = new Matrix(5, 4, OffHeapStorage.create(file, 4, PAGE_BYTES, false));
+        assertThat(emptied.get(4, 3), is(0.0));
+    }
+
+    @Test
+    public void closeDeletesTemporaryFiles() throws IOException {
+        final Random random = new Random(12345);
+        final NativeMatrix A = NativeMatrix.from(10, 7, random::nextDouble);
+        final NativeMatrix B = NativeMatrix.from(7, 5, random::nextDouble);
+        final Matrix a = mk(A);
+        final Matrix b = mk(B);
+        for (int i = 0; i < 20; i++) {
+            final Matrix ab = a.multiply(b);
+            final Matrix t = ab.transpose();
+            assertThat(tempFiles(), is(2));
+            assertEqual(t, A.multiply(B).transpose());
+            close(ab);
+            close(t);
+            assertThat(tempFiles(), is(0));
+        }
+        final OffHeapStorage st = OffHeapStorage.create(7);
+        st.get(0).set(0, 1.0);
+        st.close();
+        st.close();
+        assertThat(st.get(0).get(0), is(nullValue()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedStorageIsReadOnly() throws IOException {
+        final OffHeapStorage st = mkStorage(7);
+        st.close();
+        st.get(0).set(0, 1.0);
+    }
+
+    @Test
+    public void collectedStoragesAreDeleted() throws IOException, InterruptedException {
+        final Random random = new Random(12345);
+        final Matrix a = mk(NativeMatrix.from(10, 7, random::nextDouble));
+        for (int i = 0; i < 20; i++) {
+            a.transpose().transpose();
+        }
+        assertThat(tempFiles() > 0, is(true));
+        for (int i = 0; i < 100 && tempFiles() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            // creating a temporary storage deletes the files of collected ones
+            close(a.transpose());
+        }
+        assertThat(tempFiles(), is(0));
+    }
+}
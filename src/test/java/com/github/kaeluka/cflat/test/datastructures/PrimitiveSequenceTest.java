@@ -0,0 +1,90 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.DoubleSequence;
+import com.github.kaeluka.cflat.IntSequence;
+import com.github.kaeluka.cflat.LongSequence;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PrimitiveSequenceTest {
+    @Test
+    public void addGetSet() {
+        final IntSequence s = new IntSequence(1);
+        for (int i=0; i<100; ++i) {
+            s.add(i);
+        }
+        assertThat(s.size(), is(100));
+        assertThat(s.get(42), is(42));
+        assertThat(s.set(42, -1), is(42));
+        assertThat(s.get(42), is(-1));
+        assertThat(s.indexOf(-1), is(42));
+        assertThat(s.contains(100), is(false));
+    }
+
+    @Test
+    public void insertAndRemove() {
+        final LongSequence s = LongSequence.of(1L, 2L, 4L);
+        s.add(2, 3L);
+        s.add(4, 5L);
+        assertThat(s.toArray(), is(new long[] {1L, 2L, 3L, 4L, 5L}));
+        assertThat(s.removeAt(0), is(1L));
+        assertThat(s.removeAt(3), is(5L));
+        assertThat(s.toArray(), is(new long[] {2L, 3L, 4L}));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getPastEnd() {
+        IntSequence.of(1, 2, 3).get(3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void insertPastEnd() {
+        IntSequence.of(1, 2, 3).add(4, 0);
+    }
+
+    @Test
+    public void listView() {
+        final DoubleSequence s = DoubleSequence.of(1.0, 2.0);
+        final List<Double> l = s.asList();
+        l.add(3.0);
+        l.set(0, 0.5);
+        assertThat(s.toArray(), is(new double[] {0.5, 2.0, 3.0}));
+        assertThat(l, contains(0.5, 2.0, 3.0));
+        assertThat(l.remove(1), is(2.0));
+        assertThat(s.size(), is(2));
+        l.clear();
+        assertThat(s.isEmpty(), is(true));
+    }
+
+    @Test
+    public void listViewEquality() {
+        assertThat(IntSequence.of(1, 2, 3).asList(), is(Arrays.asList(1, 2, 3)));
+        assertThat(IntSequence.of(1, 2, 3).asList().hashCode(),
+                is(Arrays.asList(1, 2, 3).hashCode()));
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        final IntSequence s = IntSequence.of(1, 2, 3);
+        final IntSequence c = s.copy();
+        c.set(0, 7);
+        c.add(4);
+        assertThat(s, is(IntSequence.of(1, 2, 3)));
+        assertThat(c, is(IntSequence.of(7, 2, 3, 4)));
+    }
+
+    @Test
+    public void streams() {
+        assertThat(IntSequence.of(1, 2, 3).stream().sum(), is(6));
+        assertThat(DoubleSequence.of(0.5, 0.25).stream().sum(), is(0.75));
+        final long[] sum = new long[1];
+        LongSequence.of(1L, 2L).forEach(x -> sum[0] += x);
+        assertThat(sum[0], is(3L));
+    }
+}
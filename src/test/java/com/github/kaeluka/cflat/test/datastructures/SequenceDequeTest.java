@@ -0,0 +1,123 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.SequenceDeque;
+import com.github.kaeluka.cflat.storage.Storage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+@RunWith(Parameterized.class)
+public class SequenceDequeTest {
+
+    @Parameterized.Parameter()
+    public Supplier<Storage<Integer>> storageSupplier;
+
+    private SequenceDeque<Integer> mkDeque(final int capacity) {
+        return new SequenceDeque<>(storageSupplier.get(), capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<Storage>> storages() {
+        return Storages.genericStorages();
+    }
+
+    @Test
+    public void queue() {
+        final SequenceDeque<Integer> q = mkDeque(4);
+        for (int round=0; round<100; ++round) {
+            q.offer(2*round);
+            q.offer(2*round + 1);
+            assertThat(q.poll(), is(round));
+        }
+        assertThat(q.size(), is(100));
+        assertThat(q.peekFirst(), is(100));
+        assertThat(q.peekLast(), is(199));
+        assertThat(q.get(50), is(150));
+    }
+
+    @Test
+    public void growsWhileWrapped() {
+        final SequenceDeque<Integer> q = mkDeque(4);
+        q.addLast(2);
+        q.addLast(3);
+        q.addFirst(1);
+        q.addFirst(0);
+        // full and wrapped around: growing must keep the order
+        q.addLast(4);
+        q.addFirst(-1);
+        assertThat(q, contains(-1, 0, 1, 2, 3, 4));
+        final List<Integer> seen = new ArrayList<>();
+        q.forEach(seen::add);
+        assertThat(seen, contains(-1, 0, 1, 2, 3, 4));
+    }
+
+    @Test
+    public void emptyDeque() {
+        final SequenceDeque<Integer> q = mkDeque(1);
+        assertThat(q.pollFirst(), is(nullValue()));
+        assertThat(q.pollLast(), is(nullValue()));
+        assertThat(q.peek(), is(nullValue()));
+        q.push(1);
+        assertThat(q.pop(), is(1));
+        assertThat(q.isEmpty(), is(true));
+    }
+
+    @Test
+    public void removeOccurrencesAndIterators() {
+        final SequenceDeque<Integer> q = mkDeque(8);
+        for (int i=0; i<6; ++i) {
+            q.addFirst(i % 3);
+        }
+        // 2, 1, 0, 2, 1, 0
+        assertThat(q.removeFirstOccurrence(1), is(true));
+        assertThat(q.removeLastOccurrence(2), is(true));
+        assertThat(q.removeLastOccurrence(7), is(false));
+        assertThat(q, contains(2, 0, 1, 0));
+        final Iterator<Integer> it = q.descendingIterator();
+        while (it.hasNext()) {
+            if (it.next() == 0) {
+                it.remove();
+            }
+        }
+        assertThat(q, contains(2, 1));
+        q.removeIf(x -> x == 2);
+        assertThat(q, contains(1));
+    }
+
+    @Test
+    public void randomOpsMatchArrayDeque() {
+        final Random rnd = new Random(7);
+        final SequenceDeque<Integer> q = mkDeque(2);
+        final Deque<Integer> expected = new ArrayDeque<>();
+        for (int i=0; i<5000; ++i) {
+            switch (rnd.nextInt(4)) {
+                case 0: q.addFirst(i); expected.addFirst(i); break;
+                case 1: q.addLast(i); expected.addLast(i); break;
+                case 2: assertThat(q.pollFirst(), is(expected.pollFirst())); break;
+                default: assertThat(q.pollLast(), is(expected.pollLast())); break;
+            }
+        }
+        assertThat(new ArrayList<>(q), is(new ArrayList<>(expected)));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void rejectsNull() {
+        mkDeque(4).addLast(null);
+    }
+}
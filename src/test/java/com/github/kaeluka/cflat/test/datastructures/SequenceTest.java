@@ -10,11 +10,15 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Spliterator;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 
 @RunWith(Parameterized.class)
@@ -137,4 +141,76 @@ public class SequenceTest {
 
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void addAllInMiddle() {
+        final Sequence<Integer> seq = mkSequence();
+        seq.addAll(Arrays.asList(0, 1, 5, 6));
+        seq.addAll(2, Arrays.asList(2, 3, 4));
+        assertThat(seq, contains(0, 1, 2, 3, 4, 5, 6));
+        seq.addAll(0, new Integer[] {-2, -1});
+        seq.addAll(new Integer[] {7});
+        assertThat(seq, contains(-2, -1, 0, 1, 2, 3, 4, 5, 6, 7));
+        assertThat(seq.addAll(3, new Integer[0]), is(false));
+        assertThat(seq.size(), is(10));
+    }
+
+    @Test
+    public void addAllToItself() {
+        final Sequence<Integer> seq = mkSequence();
+        seq.addAll(Arrays.asList(1, 2));
+        seq.addAll(1, seq);
+        assertThat(seq, contains(1, 1, 2, 2));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void addAllPastEnd() {
+        final Sequence<Integer> seq = mkSequence();
+        seq.add(0);
+        seq.addAll(2, Arrays.asList(1, 2));
+    }
+
+    @Test
+    public void iteratorSeesNulls() {
+        final Sequence<Integer> seq = mkSequence();
+        seq.addAll(Arrays.asList(1, null, 3));
+        final List<Integer> seen = new ArrayList<>();
+        for (final Integer x : seq) {
+            seen.add(x);
+        }
+        assertThat(seen, is(Arrays.asList(1, null, 3)));
+        seen.clear();
+        seq.forEach(seen::add);
+        assertThat(seen, is(Arrays.asList(1, null, 3)));
+    }
+
+    @Test
+    public void spliteratorSplitsEvenly() {
+        final Sequence<Integer> seq = mkSequence();
+        for (int i=0; i<100; ++i) {
+            seq.add(i);
+        }
+        final Spliterator<Integer> suffix = seq.spliterator();
+        assertThat(suffix.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED), is(true));
+        final Spliterator<Integer> prefix = suffix.trySplit();
+        assertThat(prefix.estimateSize(), is(50L));
+        assertThat(suffix.estimateSize(), is(50L));
+        final int[] first = new int[1];
+        prefix.tryAdvance(x -> first[0] = x);
+        assertThat(first[0], is(0));
+        suffix.tryAdvance(x -> first[0] = x);
+        assertThat(first[0], is(50));
+    }
+
+    @Test
+    public void parallelStream() {
+        final Sequence<Integer> seq = mkSequence();
+        final int ADD_N = 10000;
+        for (int i=0; i<ADD_N; ++i) {
+            seq.add(i);
+        }
+        assertThat(seq.parallelStream().mapToLong(x -> x).sum(),
+                is((long) ADD_N * (ADD_N - 1) / 2));
+        assertThat(seq.parallelStream().collect(Collectors.toList()), is(seq));
+    }
+}
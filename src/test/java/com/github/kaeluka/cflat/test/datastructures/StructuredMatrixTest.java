@@ -0,0 +1,193 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.BandedMatrix;
+import com.github.kaeluka.cflat.DiagonalMatrix;
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.NativeMatrix;
+import com.github.kaeluka.cflat.SymmetricMatrix;
+import com.github.kaeluka.cflat.TriangularMatrix;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static junit.framework.TestCase.assertTrue;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class StructuredMatrixTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    private static final int N = 17;
+
+    private static double[] randomVector(final Random random) {
+        final double[] ret = new double[N];
+        for (int i = 0; i < N; i++) {
+            ret[i] = random.nextDouble();
+        }
+        return ret;
+    }
+
+    private static void assertVector(final double[] expected, final double[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(actual[i], closeTo(expected[i], 1e-9));
+        }
+    }
+
+    private static double[] times(final NativeMatrix A, final double[] x) {
+        final double[] ret = new double[A.getRows()];
+        for (int i = 0; i < ret.length; i++) {
+            for (int j = 0; j < x.length; j++) {
+                ret[i] += A.get(i, j) * x[j];
+            }
+        }
+        return ret;
+    }
+
+    @Test
+    public void diagonal() {
+        final DiagonalMatrix D = DiagonalMatrix.identity(3).put(1, 1, 4);
+        assertThat(D.get(1, 1), is(4.0));
+        assertThat(D.get(0, 1), is(0.0));
+        assertThat(D.multiply(D).get(1, 1), is(16.0));
+        assertThat(D.multiply(0.5).get(2, 2), is(0.5));
+        assertThat(D.solve(new double[] {1, 2, 3}, new double[3])[1], is(0.5));
+
+        final Matrix A = new Matrix(3, 2, mkStorage.get())
+                .put(1, 0, 2)
+                .put(2, 1, 3);
+        final Matrix DA = D.multiply(A);
+        assertThat(DA.get(1, 0), is(8.0));
+        assertThat(DA.get(2, 1), is(3.0));
+        assertThat(DA.getRow(0).has(0), is(false));
+        assertTrue(D.toMatrix(mkStorage.get()).multiply(A).equalTo(DA));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void diagonalRejectsOffDiagonal() {
+        new DiagonalMatrix(3).put(0, 1, 1);
+    }
+
+    @Test
+    public void banded() {
+        final Random random = new Random(12345);
+        final BandedMatrix B = new BandedMatrix(N, 2, 3);
+        final NativeMatrix dense = new NativeMatrix(N, N);
+        for (int i = 0; i < N; i++) {
+            for (int j = Math.max(0, i-2); j <= Math.min(N-1, i+3); j++) {
+                final double v = random.nextDouble() - 0.5;
+                B.put(i, j, v);
+                dense.put(i, j, v);
+            }
+        }
+        assertThat(B.get(0, 5), is(0.0));
+        final double[] x = randomVector(random);
+        assertVector(times(dense, x), B.multiply(x, new double[N]));
+        assertVector(times(dense.transpose(), x), B.transpose().multiply(x, new double[N]));
+
+        final double[] b = times(dense, x);
+        assertVector(x, B.lu().solve(b));
+        assertVector(x, B.lu().solve(b, b));
+
+        final Matrix M = B.toMatrix(mkStorage.get());
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                assertThat(M.get(i, j), is(dense.get(i, j)));
+            }
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void singularBanded() {
+        new BandedMatrix(3, 1, 1).put(0, 0, 1).put(2, 2, 1).lu();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void bandedBeforeFirstColumn() {
+        new BandedMatrix(3, 1, 1).put(0, -1, 5);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void bandedAfterLastColumn() {
+        new BandedMatrix(3, 1, 1).get(2, 3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void diagonalOutOfBounds() {
+        new DiagonalMatrix(3).put(0, 3, 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void triangularOutOfBounds() {
+        new TriangularMatrix(3, false).put(3, 0, 5);
+    }
+
+    @Test
+    public void triangular() {
+        final Random random = new Random(12345);
+        for (final boolean upper : new boolean[] {false, true}) {
+            final TriangularMatrix T = new TriangularMatrix(N, upper);
+            final NativeMatrix dense = new NativeMatrix(N, N);
+            for (int i = 0; i < N; i++) {
+                for (int j = 0; j < N; j++) {
+                    if (upper ? j >= i : j <= i) {
+                        final double v = i == j ? 1 + random.nextDouble() : random.nextDouble();
+                        T.put(i, j, v);
+                        dense.put(i, j, v);
+                    }
+                }
+            }
+            final double[] x = randomVector(random);
+            assertVector(times(dense, x), T.multiply(x, new double[N]));
+            assertThat(T.transpose().isUpper(), is(!upper));
+            assertVector(times(dense.transpose(), x), T.transpose().multiply(x, new double[N]));
+            assertVector(x, T.solve(times(dense, x), new double[N]));
+            assertVector(x, T.solveTransposed(times(dense.transpose(), x), new double[N]));
+        }
+    }
+
+    @Test
+    public void symmetric() {
+        final Random random = new Random(12345);
+        final NativeMatrix R = NativeMatrix.from(N, N, random::nextDouble);
+        // R^T * R + I is symmetric positive definite
+        final NativeMatrix dense = R.transpose().multiply(R);
+        final SymmetricMatrix S = new SymmetricMatrix(N);
+        for (int i = 0; i < N; i++) {
+            dense.put(i, i, dense.get(i, i) + 1);
+            for (int j = 0; j <= i; j++) {
+                S.put(j, i, dense.get(i, j));
+            }
+        }
+        assertThat(S.get(3, 5), is(S.get(5, 3)));
+        final double[] x = randomVector(random);
+        final double[] b = times(dense, x);
+        assertVector(b, S.multiply(x, new double[N]));
+
+        final TriangularMatrix L = S.cholesky();
+        final double[] y = L.solve(b, new double[N]);
+        assertVector(x, L.solveTransposed(y, y));
+
+        final Matrix M = S.toMatrix(mkStorage.get());
+        assertThat(M.get(2, 7), is(M.get(7, 2)));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void notPositiveDefinite() {
+        new SymmetricMatrix(2).put(0, 0, 1).put(1, 0, 2).put(1, 1, 1).cholesky();
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.kaeluka.cflat.test.datastructures;
+
+import com.github.kaeluka.cflat.Matrix;
+import com.github.kaeluka.cflat.VersionedMatrix;
+import com.github.kaeluka.cflat.storage.NestedStorage;
+import com.github.kaeluka.cflat.util.Storages;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+@RunWith(Parameterized.class)
+public class VersionedMatrixTest {
+    @Parameterized.Parameter()
+    public Supplier<NestedStorage<Double>> mkStorage;
+
+    @SuppressWarnings("unchecked")
+    @Parameterized.Parameters(name="{0}")
+    public static Collection<Supplier<NestedStorage<Double>>> storages() {
+        return Storages.nestedStorages();
+    }
+
+    private VersionedMatrix base() {
+        final Matrix m = new Matrix(600, 10, mkStorage.get())
+                .put(0, 0, 1)
+                .put(300, 5, 2)
+                .put(599, 9, 3);
+        return VersionedMatrix.from(m);
+    }
+
+    @Test
+    public void snapshotsAreIsolated() {
+        final VersionedMatrix v1 = base();
+        final VersionedMatrix v2 = v1.snapshot();
+        v1.put(0, 0, 10).put(300, 6, 20).put(400, 1, 30);
+        assertThat(v2.get(0, 0), is(1.0));
+        assertThat(v2.get(300, 6), is(0.0));
+        assertThat(v2.get(400, 1), is(0.0));
+        assertThat(v1.get(0, 0), is(10.0));
+        assertThat(v1.get(300, 5), is(2.0));
+        assertThat(v1.get(300, 6), is(20.0));
+
+        v2.put(599, 9, -3);
+        assertThat(v1.get(599, 9), is(3.0));
+        assertThat(v2.get(599, 9), is(-3.0));
+
+        final VersionedMatrix v3 = v1.snapshot();
+        v1.put(0, 0, 100);
+        v3.put(0, 1, 5);
+        assertThat(v3.get(0, 0), is(10.0));
+        assertThat(v1.get(0, 1), is(0.0));
+        assertThat(v2.get(0, 0), is(1.0));
+    }
+
+    @Test
+    public void sourceMatrixIsNotWritten() {
+        final Matrix m = new Matrix(3, 3, mkStorage.get()).put(1, 1, 4);
+        final VersionedMatrix v = VersionedMatrix.from(m);
+        v.put(1, 1, 5).put(1, 2, 6);
+        assertThat(m.get(1, 1), is(4.0));
+        assertThat(m.get(1, 2), is(0.0));
+    }
+
+    @Test
+    public void emptySourceMatrix() {
+        final Matrix m = new Matrix(3, 3, mkStorage.get());
+        final VersionedMatrix v = VersionedMatrix.from(m);
+        assertThat(m.storage.has(0), is(false));
+        v.put(0, 1, 2);
+        assertThat(v.get(0, 1), is(2.0));
+        assertThat(m.get(0, 1), is(0.0));
+    }
+
+    @Test
+    public void readers() {
+        final VersionedMatrix v = base();
+        v.put(2, 3, 4);
+        final double[] x = new double[10];
+        x[0] = 1;
+        x[3] = 2;
+        final double[] y = v.multiply(x, new double[600]);
+        assertThat(y[0], is(1.0));
+        assertThat(y[2], is(8.0));
+        final Matrix m = v.snapshot().toMatrix(mkStorage.get());
+        assertThat(m.get(300, 5), is(2.0));
+        assertThat(m.get(2, 3), is(4.0));
+        final int[] count = new int[1];
+        v.foreachInRow(300, (col, val) -> count[0]++);
+        assertThat(count[0], is(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void outOfBounds() {
+        base().put(600, 0, 1);
+    }
+}